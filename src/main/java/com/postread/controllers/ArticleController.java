@@ -5,27 +5,34 @@ import com.postread.data.ArticleBlock;
 import com.postread.data.Tag;
 import com.postread.dto.ArticleBlockDTO;
 import com.postread.dto.ArticleDTO;
+import com.postread.dto.ArticleFeedPage;
+import com.postread.dto.ArticleSearchPage;
+import com.postread.security.CurrentUser;
 import com.postread.security.User;
+import com.postread.security.UserDetailsImpl;
 import com.postread.repositories.ArticleRepository;
-import com.postread.repositories.UserRepository;
+import com.postread.services.ArticleSearchService;
 import com.postread.services.ArticleService;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.postread.services.TagService;
+import com.postread.services.TrendingService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 
@@ -34,31 +41,95 @@ import java.util.Set;
 @RequiredArgsConstructor
 public class ArticleController {
 
+    private static final String SORT_TRENDING = "trending";
+    private static final String SORT_FOLLOWING = "following";
+
     private final ArticleService articleService;
     private final ArticleRepository articleRepository;
-    private final UserRepository userRepository;
     private final ObjectMapper objectMapper;
     private final TagService tagService;
+    private final ArticleSearchService articleSearchService;
+    private final TrendingService trendingService;
 
-    // Получаем текущего аутентифицированного пользователя
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.isAuthenticated() &&
-                !authentication.getName().equals("anonymousUser")) {
-            String username = authentication.getName();
-            return userRepository.findByName(username)
-                    .orElseThrow(() -> new RuntimeException("Пользователь не найден: " + username));
+    @GetMapping
+    public String getAllArticles(@RequestParam(required = false) String cursor,
+                                 @RequestParam(defaultValue = "" + ArticleService.DEFAULT_FEED_PAGE_SIZE) int size,
+                                 @RequestParam(required = false) String sort,
+                                 Model model) {
+        boolean trending = SORT_TRENDING.equals(sort);
+        ArticleFeedPage page;
+        try {
+            page = loadFeed(trending, cursor, size);
+        } catch (IllegalArgumentException e) {
+            // Битый курсор - начинаем ленту сначала
+            page = loadFeed(trending, null, size);
         }
-        throw new RuntimeException("Пользователь не аутентифицирован");
+        model.addAttribute("articles", page.getArticles());
+        model.addAttribute("nextCursor", page.getNextCursor());
+        model.addAttribute("hasMore", page.isHasMore());
+        model.addAttribute("sort", trending ? SORT_TRENDING : null);
+        return "articles-list";
     }
 
-    @GetMapping
-    public String getAllArticles(Model model) {
-        List<Article> articles = articleRepository.findAllOriginalArticles();
-        model.addAttribute("articles", articles);
+    @GetMapping("/api/feed")
+    @ResponseBody
+    public ResponseEntity<?> getArticlesFeed(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + ArticleService.DEFAULT_FEED_PAGE_SIZE) int size,
+            @RequestParam(required = false) String sort) {
+        try {
+            return ResponseEntity.ok(loadFeed(SORT_TRENDING.equals(sort), cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Лента подписок текущего пользователя
+    @GetMapping("/following")
+    public String getFollowingArticles(@RequestParam(required = false) String cursor,
+                                       @RequestParam(defaultValue = "" + ArticleService.DEFAULT_FEED_PAGE_SIZE) int size,
+                                       @CurrentUser UserDetailsImpl currentUser,
+                                       Model model) {
+        if (currentUser == null) {
+            return "redirect:/auth/login";
+        }
+        ArticleFeedPage page;
+        try {
+            page = articleService.getHomeFeed(currentUser.getId(), cursor, size);
+        } catch (IllegalArgumentException e) {
+            page = articleService.getHomeFeed(currentUser.getId(), null, size);
+        }
+        model.addAttribute("articles", page.getArticles());
+        model.addAttribute("nextCursor", page.getNextCursor());
+        model.addAttribute("hasMore", page.isHasMore());
+        model.addAttribute("sort", SORT_FOLLOWING);
         return "articles-list";
     }
 
+    @GetMapping("/api/following")
+    @ResponseBody
+    public ResponseEntity<?> getFollowingFeed(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + ArticleService.DEFAULT_FEED_PAGE_SIZE) int size,
+            @CurrentUser UserDetailsImpl currentUser) {
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "Пользователь не аутентифицирован"));
+        }
+        try {
+            return ResponseEntity.ok(articleService.getHomeFeed(currentUser.getId(), cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Лента "в тренде" строится из памяти TrendingService, обычная - по дате из БД
+    private ArticleFeedPage loadFeed(boolean trending, String cursor, int size) {
+        return trending
+                ? trendingService.getTrendingFeed(cursor, size)
+                : articleService.getArticlesFeed(cursor, size);
+    }
+
     @GetMapping("/{id}")
     public String getArticle(@PathVariable Long id, Model model) {
         try {
@@ -99,10 +170,23 @@ public class ArticleController {
 
     @GetMapping("/api/{id}")
     @ResponseBody
-    public ResponseEntity<?> getArticleData(@PathVariable Long id) {
+    public ResponseEntity<?> getArticleData(@PathVariable Long id, WebRequest webRequest) {
         try {
             ArticleDTO articleDTO = articleService.getArticleDTOWithoutIncrement(id);
-            return ResponseEntity.ok(articleDTO);
+
+            // Клиент уже получал эту версию статьи - отвечаем 304 без тела
+            String etag = articleETag(articleDTO);
+            if (webRequest.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(etag)
+                        .cacheControl(CacheControl.noCache())
+                        .build();
+            }
+
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .body(articleDTO);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(Map.of("error", "Статья не найдена"));
@@ -110,19 +194,19 @@ public class ArticleController {
     }
 
     @GetMapping("/editor")
-    public String showEditor() {
-        try {
-            getCurrentUser();
-            return "article-editor";
-        } catch (RuntimeException e) {
+    public String showEditor(@CurrentUser UserDetailsImpl currentUser) {
+        if (currentUser == null) {
             return "redirect:/auth/login";
         }
+        return "article-editor";
     }
 
     @GetMapping("/editor/{articleId}")
-    public String showReviewEditor(@PathVariable Long articleId, Model model) {
+    public String showReviewEditor(@PathVariable Long articleId, @CurrentUser UserDetailsImpl currentUser, Model model) {
+        if (currentUser == null) {
+            return "redirect:/auth/login";
+        }
         try {
-            getCurrentUser();
             Optional<Article> article = articleRepository.findById(articleId);
             if (article.isPresent()) {
                 model.addAttribute("originalArticle", article.get());
@@ -135,23 +219,19 @@ public class ArticleController {
     }
 
     @GetMapping("/create-form")
-    public String showCreateForm() {
-        try {
-            getCurrentUser();
-            return "create-article";
-        } catch (RuntimeException e) {
+    public String showCreateForm(@CurrentUser UserDetailsImpl currentUser) {
+        if (currentUser == null) {
             return "redirect:/auth/login";
         }
+        return "create-article";
     }
 
     @GetMapping("/create-review-form")
-    public String showCreateReviewForm() {
-        try {
-            getCurrentUser();
-            return "create-review";
-        } catch (RuntimeException e) {
+    public String showCreateReviewForm(@CurrentUser UserDetailsImpl currentUser) {
+        if (currentUser == null) {
             return "redirect:/auth/login";
         }
+        return "create-review";
     }
 
     @GetMapping("/{id}/reviews")
@@ -173,6 +253,7 @@ public class ArticleController {
             @RequestParam(required = false) String title,
             @RequestParam(required = false) List<String> tags,
             @RequestParam(required = false) String searchType,
+            @RequestParam(defaultValue = "0") int page,
             Model model) {
 
         String searchTitleValue = title != null ? title : "";
@@ -183,19 +264,13 @@ public class ArticleController {
                 (tags != null && !tags.isEmpty());
 
         if (hasSearchParams) {
-            List<Article> articles;
-
             try {
-                if ("tags".equals(searchType) && tags != null && !tags.isEmpty()) {
-                    articles = articleService.searchArticlesByTags(tags);
-                } else if ("title".equals(searchType) && title != null && !title.trim().isEmpty()) {
-                    articles = articleService.searchArticlesByTitle(title);
-                } else {
-                    articles = articleService.searchArticlesByTitleAndTags(title, tags);
-                }
+                ArticleSearchPage result = runSearch(title, tags, searchType, false, page, ArticleSearchService.DEFAULT_PAGE_SIZE);
 
-                model.addAttribute("articles", articles);
-                model.addAttribute("resultsCount", articles.size());
+                model.addAttribute("articles", result.getArticles());
+                model.addAttribute("resultsCount", result.getTotal());
+                model.addAttribute("page", result.getPage());
+                model.addAttribute("hasMore", result.isHasMore());
 
             } catch (Exception e) {
                 model.addAttribute("error", "Ошибка при поиске: " + e.getMessage());
@@ -224,26 +299,28 @@ public class ArticleController {
     public ResponseEntity<?> searchArticlesApi(
             @RequestParam(required = false) String title,
             @RequestParam(required = false) List<String> tags,
-            @RequestParam(required = false, defaultValue = "all") String searchType) {
+            @RequestParam(required = false, defaultValue = "all") String searchType,
+            @RequestParam(required = false, defaultValue = "any") String tagMode,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "" + ArticleSearchService.DEFAULT_PAGE_SIZE) int size) {
 
         try {
-            List<Article> articles;
-
-            if ("tags".equals(searchType) && tags != null && !tags.isEmpty()) {
-                articles = articleService.searchArticlesByTags(tags);
-            } else if ("title".equals(searchType) && title != null && !title.trim().isEmpty()) {
-                articles = articleService.searchArticlesByTitle(title);
-            } else {
-                articles = articleService.searchArticlesByTitleAndTags(title, tags);
-            }
-
-            return ResponseEntity.ok(articles);
+            return ResponseEntity.ok(runSearch(title, tags, searchType, "all".equals(tagMode), page, size));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Ошибка при поиске: " + e.getMessage());
         }
     }
 
+    // searchType: "title" - только текст, "tags" - только теги, иначе - оба условия
+    // tagMode: "all" - статья должна содержать все теги, иначе - хотя бы один
+    private ArticleSearchPage runSearch(String title, List<String> tags, String searchType,
+                                        boolean matchAllTags, int page, int size) {
+        String query = "tags".equals(searchType) ? null : title;
+        List<String> tagFilter = "title".equals(searchType) ? null : tags;
+        return articleSearchService.search(query, tagFilter, matchAllTags, page, size);
+    }
+
     @GetMapping("/api/tags")
     @ResponseBody
     public ResponseEntity<List<Tag>> searchTags(@RequestParam(required = false) String query) {
@@ -260,19 +337,29 @@ public class ArticleController {
         }
     }
 
-    @GetMapping("/api/user/current")
+    // Теги в тренде: чаще всего использованные в статьях за последнюю неделю
+    @GetMapping("/api/tags/trending")
     @ResponseBody
-    public ResponseEntity<?> getCurrentUserInfo() {
+    public ResponseEntity<List<Tag>> getTrendingTags(@RequestParam(defaultValue = "10") int limit) {
         try {
-            User currentUser = getCurrentUser();
-            Map<String, Object> userInfo = new HashMap<>();
-            userInfo.put("id", currentUser.getId());
-            userInfo.put("username", currentUser.getName());
-            userInfo.put("email", currentUser.getEmail());
-            return ResponseEntity.ok(userInfo);
-        } catch (RuntimeException e) {
+            return ResponseEntity.ok(tagService.getTrendingTags(Math.max(1, Math.min(limit, 50))));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/api/user/current")
+    @ResponseBody
+    public ResponseEntity<?> getCurrentUserInfo(@CurrentUser User currentUser) {
+        if (currentUser == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
+        // Пользователь читается из БД, поэтому имя и email актуальны сразу после правки профиля
+        Map<String, Object> userInfo = new HashMap<>();
+        userInfo.put("id", currentUser.getId());
+        userInfo.put("username", currentUser.getName());
+        userInfo.put("email", currentUser.getEmail());
+        return ResponseEntity.ok(userInfo);
     }
 
     // Обновленный метод createArticle для поддержки рецензий
@@ -286,10 +373,13 @@ public class ArticleController {
             @RequestParam(required = false) Long authorId,
             @RequestParam boolean isPublished,
             @RequestParam(required = false) Set<String> tags,
-            @RequestParam(required = false) Long reviewForArticleId) {
+            @RequestParam(required = false) Long reviewForArticleId,
+            @CurrentUser User currentUser) {
 
         try {
-            User currentUser = getCurrentUser();
+            if (currentUser == null) {
+                throw new RuntimeException("Пользователь не аутентифицирован");
+            }
             Long actualAuthorId = currentUser.getId();
 
             if (authorId != null && !currentUser.getId().equals(authorId)) {
@@ -359,6 +449,20 @@ public class ArticleController {
         }
     }
 
+    // Версия статьи: дата изменения (меняется и при правке блоков и тегов), имя и аватар автора,
+    // счетчики комментариев и рецензий. Просмотры в версию не входят - иначе популярная статья
+    // никогда не отдавала бы 304; viewCount в ответе может быть устаревшим
+    private String articleETag(ArticleDTO article) {
+        long updatedAt = article.getUpdatedAt() != null
+                ? article.getUpdatedAt().atZone(ZoneOffset.UTC).toInstant().toEpochMilli()
+                : 0L;
+        int author = article.getAuthor() != null
+                ? Objects.hash(article.getAuthor().getName(), article.getAuthor().getIcon())
+                : 0;
+        return "W/\"a" + article.getId() + "-" + updatedAt + "-" + Integer.toHexString(author) + "-"
+                + article.getCommentsCount() + "-" + article.getReviewsCount() + "\"";
+    }
+
     private List<ArticleBlock> parseBlocksFromJson(String blocksJson) {
         try {
             return objectMapper.readValue(blocksJson, new TypeReference<List<ArticleBlock>>() {});
@@ -3,16 +3,14 @@ package com.postread.controllers;
 import com.postread.data.Article;
 import com.postread.data.ArticleBlock;
 import com.postread.dto.ArticleDTO;
-import com.postread.security.User;
-import com.postread.repositories.UserRepository;
+import com.postread.security.CurrentUser;
+import com.postread.security.UserDetailsImpl;
 import com.postread.services.ArticleManagementService;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -28,28 +26,17 @@ import java.util.Set;
 public class ArticleManagementController {
 
     private final ArticleManagementService articleManagementService;
-    private final UserRepository userRepository;
     private final ObjectMapper objectMapper;
 
-    // Получаем текущего аутентифицированного пользователя
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.isAuthenticated() &&
-                !authentication.getName().equals("anonymousUser")) {
-            String username = authentication.getName();
-            return userRepository.findByName(username)
-                    .orElseThrow(() -> new RuntimeException("Пользователь не найден: " + username));
-        }
-        throw new RuntimeException("Пользователь не аутентифицирован");
-    }
-
     /**
      * Страница редактирования статьи
      */
     @GetMapping("/edit/{id}")
-    public String editArticle(@PathVariable Long id, Model model) {
+    public String editArticle(@PathVariable Long id, @CurrentUser UserDetailsImpl currentUser, Model model) {
         try {
-            User currentUser = getCurrentUser();
+            if (currentUser == null) {
+                throw new RuntimeException("Пользователь не аутентифицирован");
+            }
             ArticleDTO articleDTO = articleManagementService.getArticleDTOForEditing(id, currentUser.getId());
 
             model.addAttribute("article", articleDTO);
@@ -69,10 +56,13 @@ public class ArticleManagementController {
             @RequestParam String shortDescription,
             @RequestParam String blocks,
             @RequestParam boolean isPublished,
-            @RequestParam(required = false) Set<String> tags) {
+            @RequestParam(required = false) Set<String> tags,
+            @CurrentUser UserDetailsImpl currentUser) {
 
         try {
-            User currentUser = getCurrentUser();
+            if (currentUser == null) {
+                throw new RuntimeException("Пользователь не аутентифицирован");
+            }
 
             List<ArticleBlock> articleBlocks = parseBlocksFromJson(blocks);
 
@@ -124,9 +114,11 @@ public class ArticleManagementController {
      */
     @PostMapping("/delete/{id}")
     @ResponseBody
-    public ResponseEntity<?> deleteArticle(@PathVariable Long id) {
+    public ResponseEntity<?> deleteArticle(@PathVariable Long id, @CurrentUser UserDetailsImpl currentUser) {
         try {
-            User currentUser = getCurrentUser();
+            if (currentUser == null) {
+                throw new RuntimeException("Пользователь не аутентифицирован");
+            }
             articleManagementService.deleteArticle(id, currentUser.getId());
 
             // ИСПРАВЛЕННАЯ ВЕРСИЯ - используем HashMap вместо Map.of()
@@ -157,9 +149,11 @@ public class ArticleManagementController {
      */
     @PostMapping("/publish/{id}")
     @ResponseBody
-    public ResponseEntity<?> publishArticle(@PathVariable Long id) {
+    public ResponseEntity<?> publishArticle(@PathVariable Long id, @CurrentUser UserDetailsImpl currentUser) {
         try {
-            User currentUser = getCurrentUser();
+            if (currentUser == null) {
+                throw new RuntimeException("Пользователь не аутентифицирован");
+            }
             Article article = articleManagementService.publishArticle(id, currentUser.getId());
 
             Map<String, Object> response = new HashMap<>();
@@ -188,9 +182,11 @@ public class ArticleManagementController {
      */
     @PostMapping("/unpublish/{id}")
     @ResponseBody
-    public ResponseEntity<?> unpublishArticle(@PathVariable Long id) {
+    public ResponseEntity<?> unpublishArticle(@PathVariable Long id, @CurrentUser UserDetailsImpl currentUser) {
         try {
-            User currentUser = getCurrentUser();
+            if (currentUser == null) {
+                throw new RuntimeException("Пользователь не аутентифицирован");
+            }
             Article article = articleManagementService.unpublishArticle(id, currentUser.getId());
 
             Map<String, Object> response = new HashMap<>();
@@ -228,9 +224,12 @@ public class ArticleManagementController {
     @GetMapping("/create-form2")
     public String createArticleForm(@RequestParam(required = false) Boolean edit,
                                     @RequestParam(required = false) Long articleId,
+                                    @CurrentUser UserDetailsImpl currentUser,
                                     Model model) {
         try {
-            User currentUser = getCurrentUser();
+            if (currentUser == null) {
+                throw new RuntimeException("Пользователь не аутентифицирован");
+            }
 
             if (edit != null && edit && articleId != null) {
                 // Режим редактирования - загружаем данные статьи
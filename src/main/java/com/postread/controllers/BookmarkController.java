@@ -1,13 +1,11 @@
 package com.postread.controllers;
 
 import com.postread.data.Bookmark;
-import com.postread.security.User;
+import com.postread.security.CurrentUser;
+import com.postread.security.UserDetailsImpl;
 import com.postread.services.BookmarkService;
-import com.postread.repositories.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -22,31 +20,17 @@ import java.util.Map;
 public class BookmarkController {
 
     private final BookmarkService bookmarkService;
-    private final UserRepository userRepository;
-
-    // Получаем текущего аутентифицированного пользователя (как в ArticleController)
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.isAuthenticated() &&
-                !authentication.getName().equals("anonymousUser")) {
-            String username = authentication.getName();
-            System.out.println("🔍 BookmarkController: Getting user by username: " + username);
-            User user = userRepository.findByName(username)
-                    .orElseThrow(() -> new RuntimeException("Пользователь не найден: " + username));
-            System.out.println("✅ BookmarkController: User found: " + user.getName() + " (ID: " + user.getId() + ")");
-            return user;
-        }
-        throw new RuntimeException("Пользователь не аутентифицирован");
-    }
 
     @PostMapping("/toggle/{articleId}")
     @ResponseBody
-    public ResponseEntity<?> toggleBookmark(@PathVariable Long articleId) {
+    public ResponseEntity<?> toggleBookmark(@PathVariable Long articleId, @CurrentUser UserDetailsImpl currentUser) {
         try {
             System.out.println("🔄 BookmarkController: Toggle bookmark called for article: " + articleId);
 
-            User currentUser = getCurrentUser();
-            System.out.println("👤 Current user: " + currentUser.getName() + " (ID: " + currentUser.getId() + ")");
+            if (currentUser == null) {
+                throw new RuntimeException("Пользователь не аутентифицирован");
+            }
+            System.out.println("👤 Current user: " + currentUser.getUsername() + " (ID: " + currentUser.getId() + ")");
 
             // Прямой вызов без лишних проверок
             boolean isBookmarked = bookmarkService.toggleBookmark(currentUser.getId(), articleId);
@@ -74,11 +58,13 @@ public class BookmarkController {
     // API: Проверить статус избранного
     @GetMapping("/status/{articleId}")
     @ResponseBody
-    public ResponseEntity<?> getBookmarkStatus(@PathVariable Long articleId) {
+    public ResponseEntity<?> getBookmarkStatus(@PathVariable Long articleId, @CurrentUser UserDetailsImpl currentUser) {
         try {
             System.out.println("🔍 BookmarkController: Getting bookmark status for article: " + articleId);
 
-            User currentUser = getCurrentUser();
+            if (currentUser == null) {
+                throw new RuntimeException("Пользователь не аутентифицирован");
+            }
             Long userId = currentUser.getId();
 
             boolean isBookmarked = bookmarkService.isArticleBookmarked(userId, articleId);
@@ -107,11 +93,13 @@ public class BookmarkController {
 
     // Страница с избранными статьями
     @GetMapping
-    public String getBookmarksPage(Model model) {
+    public String getBookmarksPage(@CurrentUser UserDetailsImpl currentUser, Model model) {
         try {
             System.out.println("📖 BookmarkController: Loading bookmarks page");
 
-            User currentUser = getCurrentUser();
+            if (currentUser == null) {
+                throw new RuntimeException("Пользователь не аутентифицирован");
+            }
             Long userId = currentUser.getId();
 
             List<Bookmark> bookmarks = bookmarkService.getUserBookmarks(userId);
@@ -121,7 +109,7 @@ public class BookmarkController {
             model.addAttribute("bookmarks", bookmarks);
             model.addAttribute("bookmarksCount", bookmarksCount);
 
-            System.out.println("✅ BookmarkController: Loaded " + bookmarksCount + " bookmarks for user " + currentUser.getName());
+            System.out.println("✅ BookmarkController: Loaded " + bookmarksCount + " bookmarks for user " + currentUser.getUsername());
             return "bookmarks";
         } catch (RuntimeException e) {
             System.err.println("❌ BookmarkController: Authentication error - redirecting to login");
@@ -1,18 +1,14 @@
 package com.postread.controllers;
 
 import com.postread.dto.CommentDTO;
-import com.postread.repositories.UserRepository;
-import com.postread.security.User;
+import com.postread.security.CurrentUser;
+import com.postread.security.UserDetailsImpl;
 import com.postread.services.CommentService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -22,35 +18,36 @@ public class CommentController {
 
     private final CommentService commentService;
 
-    private final UserRepository userRepository;
-
-    // Получить текущего пользователя
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.isAuthenticated() &&
-                !authentication.getName().equals("anonymousUser")) {
-            String username = authentication.getName();
-            return userRepository.findByName(username)
-                    .orElseThrow(() -> new RuntimeException("Пользователь не найден: " + username));
+    // Страница веток комментариев статьи: корневые комментарии и первые ответы
+    @GetMapping("/article/{articleId}")
+    public ResponseEntity<?> getCommentsForArticle(
+            @PathVariable Long articleId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + CommentService.DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(defaultValue = "" + CommentService.DEFAULT_REPLIES_PER_THREAD) int replies) {
+        try {
+            return ResponseEntity.ok(commentService.getCommentThreads(articleId, cursor, size, replies));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Ошибка при загрузке комментариев: " + e.getMessage());
         }
-        throw new RuntimeException("Пользователь не аутентифицирован");
     }
 
-    // Получить все комментарии для статьи
-    @GetMapping("/article/{articleId}")
-    public ResponseEntity<?> getCommentsForArticle(@PathVariable Long articleId) {
+    // Догрузка ответов ветки
+    @GetMapping("/thread/{rootId}/replies")
+    public ResponseEntity<?> getThreadReplies(
+            @PathVariable Long rootId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + CommentService.DEFAULT_PAGE_SIZE) int size) {
         try {
-            List<CommentDTO> comments = commentService.getCommentsForArticle(articleId);
-            Long commentsCount = commentService.getCommentsCountForArticle(articleId);
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("comments", comments);
-            response.put("totalCount", commentsCount);
-
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(commentService.getThreadReplies(rootId, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Ошибка при загрузке комментариев: " + e.getMessage());
+                    .body("Ошибка при загрузке ответов: " + e.getMessage());
         }
     }
 
@@ -59,10 +56,13 @@ public class CommentController {
     public ResponseEntity<?> createComment(
             @PathVariable Long articleId,
             @RequestParam String content,
-            @RequestParam(required = false) Long parentCommentId) {
+            @RequestParam(required = false) Long parentCommentId,
+            @CurrentUser UserDetailsImpl currentUser) {
 
         try {
-            User currentUser = getCurrentUser();
+            if (currentUser == null) {
+                throw new RuntimeException("Пользователь не аутентифицирован");
+            }
 
             if (content == null || content.trim().isEmpty()) {
                 return ResponseEntity.badRequest().body("Текст комментария не может быть пустым");
@@ -82,9 +82,11 @@ public class CommentController {
 
     // Удалить комментарий
     @DeleteMapping("/{commentId}")
-    public ResponseEntity<?> deleteComment(@PathVariable Long commentId) {
+    public ResponseEntity<?> deleteComment(@PathVariable Long commentId, @CurrentUser UserDetailsImpl currentUser) {
         try {
-            User currentUser = getCurrentUser();
+            if (currentUser == null) {
+                throw new RuntimeException("Пользователь не аутентифицирован");
+            }
             commentService.deleteComment(commentId, currentUser.getId());
 
             return ResponseEntity.ok().body("Комментарий удален");
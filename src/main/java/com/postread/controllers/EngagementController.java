@@ -0,0 +1,34 @@
+package com.postread.controllers;
+
+import com.postread.security.CurrentUser;
+import com.postread.security.UserDetailsImpl;
+import com.postread.services.EngagementService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/engagement")
+@RequiredArgsConstructor
+public class EngagementController {
+
+    private final EngagementService engagementService;
+
+    // Закладки и реакции текущего пользователя для карточек списка: ?ids=1,2,3
+    @GetMapping("/articles")
+    public ResponseEntity<?> getArticlesEngagement(@RequestParam("ids") List<Long> articleIds,
+                                                   @CurrentUser UserDetailsImpl currentUser) {
+        try {
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .body(engagementService.getEngagement(
+                            currentUser != null ? currentUser.getId() : null, articleIds));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -1,16 +1,17 @@
 package com.postread.controllers;
 
-import com.postread.data.Reaction;
 import com.postread.data.ReactionType;
-import com.postread.security.User;
+import com.postread.security.CurrentUser;
+import com.postread.security.UserDetailsImpl;
 import com.postread.services.ReactionService;
-import com.postread.repositories.UserRepository;
+import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -22,9 +23,6 @@ public class ReactionController {
     @Autowired
     private ReactionService reactionService;
 
-    @Autowired
-    private UserRepository userRepository;
-
     // Маппинг эмодзи на коды реакций
     private final Map<String, Integer> emojiToCode = Map.ofEntries(
             Map.entry("👍", 1), Map.entry("👎", 2), Map.entry("❤️", 3), Map.entry("😂", 4),
@@ -39,26 +37,16 @@ public class ReactionController {
             Map.entry(9, "🤔"), Map.entry(10, "👏"), Map.entry(11, "😕"), Map.entry(12, "🎉")
     );
 
-    // Получаем текущего аутентифицированного пользователя (такой же метод как в ArticleController)
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.isAuthenticated() &&
-                !authentication.getName().equals("anonymousUser")) {
-            String username = authentication.getName();
-            return userRepository.findByName(username)
-                    .orElseThrow(() -> new RuntimeException("Пользователь не найден: " + username));
-        }
-        throw new RuntimeException("Пользователь не аутентифицирован");
-    }
-
     @PostMapping("/article/{articleId}")
     public ResponseEntity<?> addReaction(
             @PathVariable Long articleId,
-            @RequestParam String emoji) {
+            @RequestParam String emoji,
+            @CurrentUser UserDetailsImpl user) {
 
         try {
-            // Получаем текущего пользователя через SecurityContextHolder
-            User user = getCurrentUser();
+            if (user == null) {
+                throw new RuntimeException("Пользователь не аутентифицирован");
+            }
 
             Integer reactionCode = emojiToCode.get(emoji);
             if (reactionCode == null) {
@@ -66,14 +54,15 @@ public class ReactionController {
             }
 
             ReactionType reactionType = ReactionType.fromCode(reactionCode);
-            Reaction reaction = reactionService.addOrUpdateReaction(user, articleId, reactionType);
+            Integer userReaction = reactionService.addOrUpdateReaction(user.getId(), articleId, reactionType);
 
             // Получаем обновленную статистику
             Map<ReactionType, Long> stats = reactionService.getReactionStats(articleId);
-            Integer userReaction = reaction.getType();
 
             return ResponseEntity.ok(createSuccessResponse(stats, userReaction));
 
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(createErrorResponse(e.getMessage()));
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
         } catch (Exception e) {
@@ -83,13 +72,14 @@ public class ReactionController {
     }
 
     @DeleteMapping("/article/{articleId}")
-    public ResponseEntity<?> removeReaction(@PathVariable Long articleId) {
+    public ResponseEntity<?> removeReaction(@PathVariable Long articleId, @CurrentUser UserDetailsImpl user) {
 
         try {
-            // Получаем текущего пользователя через SecurityContextHolder
-            User user = getCurrentUser();
+            if (user == null) {
+                throw new RuntimeException("Пользователь не аутентифицирован");
+            }
 
-            reactionService.removeReaction(user, articleId);
+            reactionService.removeReaction(user.getId(), articleId);
 
             // Получаем обновленную статистику
             Map<ReactionType, Long> stats = reactionService.getReactionStats(articleId);
@@ -103,24 +93,33 @@ public class ReactionController {
     }
 
     @GetMapping("/article/{articleId}/stats")
-    public ResponseEntity<?> getReactionStats(@PathVariable Long articleId) {
+    public ResponseEntity<?> getReactionStats(@PathVariable Long articleId,
+                                              @CurrentUser UserDetailsImpl user,
+                                              WebRequest webRequest) {
 
         try {
             Map<ReactionType, Long> stats = reactionService.getReactionStats(articleId);
             Integer userReaction = null;
 
-            // Получаем текущего пользователя через SecurityContextHolder
-            try {
-                User user = getCurrentUser();
-                userReaction = reactionService.getUserReaction(user, articleId)
-                        .map(Reaction::getType)
-                        .orElse(null);
-            } catch (RuntimeException e) {
-                // Пользователь не аутентифицирован - это нормально для статистики
-                userReaction = null;
+            // Пользователь не аутентифицирован - это нормально для статистики
+            if (user != null) {
+                userReaction = reactionService.getUserReaction(user.getId(), articleId).orElse(null);
             }
 
-            return ResponseEntity.ok(createSuccessResponse(stats, userReaction));
+            // Счетчики не изменились с прошлого запроса клиента - отвечаем 304 без тела
+            String etag = statsETag(articleId, stats, userReaction);
+            CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+            if (webRequest.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(etag)
+                        .cacheControl(cacheControl)
+                        .build();
+            }
+
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .body(createSuccessResponse(stats, userReaction));
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -146,6 +145,16 @@ public class ReactionController {
         return response;
     }
 
+    // ETag из всех счетчиков в порядке кодов реакций и реакции текущего пользователя
+    private String statsETag(Long articleId, Map<ReactionType, Long> stats, Integer userReaction) {
+        StringBuilder etag = new StringBuilder("W/\"r").append(articleId);
+        for (ReactionType type : ReactionType.values()) {
+            etag.append('.').append(stats.getOrDefault(type, 0L));
+        }
+        etag.append('-').append(userReaction != null ? userReaction : 0).append('"');
+        return etag.toString();
+    }
+
     private Map<String, Object> createErrorResponse(String error) {
         Map<String, Object> response = new HashMap<>();
         response.put("success", false);
@@ -45,13 +45,25 @@ public class ReviewsController {
         }
     }
 
+    // Похожие статьи ("Читайте также")
+    @GetMapping("/{articleId}/related")
+    public ResponseEntity<?> getRelatedArticles(@PathVariable Long articleId,
+                                                @RequestParam(defaultValue = "5") int limit) {
+        try {
+            return ResponseEntity.ok(articleService.getRelatedArticles(articleId, Math.max(1, Math.min(limit, 20))));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.ok(List.of());
+        }
+    }
+
     private ArticleSimpleDTO convertToSimpleDTO(Article article) {
         ArticleSimpleDTO dto = new ArticleSimpleDTO();
         dto.setId(article.getId());
         dto.setTitle(article.getTitle());
         dto.setShortDescription(article.getShortDescription());
         dto.setPublished(article.isPublished());
-        dto.setViewCount(article.getViewCount());
+        dto.setViewCount(articleService.getViewCount(article));
 
         // Добавляем информацию об авторе
         if (article.getAuthor() != null) {
@@ -0,0 +1,75 @@
+package com.postread.controllers;
+
+import com.postread.security.CurrentUser;
+import com.postread.security.UserDetailsImpl;
+import com.postread.services.SubscriptionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/users")
+@RequiredArgsConstructor
+public class SubscriptionController {
+
+    private final SubscriptionService subscriptionService;
+
+    // Подписаться на автора
+    @PostMapping("/{userId}/follow")
+    public ResponseEntity<?> follow(@PathVariable Long userId, @CurrentUser UserDetailsImpl currentUser) {
+        try {
+            if (currentUser == null) {
+                throw new RuntimeException("Пользователь не аутентифицирован");
+            }
+            subscriptionService.follow(currentUser.getId(), userId);
+            return ResponseEntity.ok(state(true, userId, "Вы подписались на автора"));
+        } catch (Exception e) {
+            System.err.println("❌ SubscriptionController: Error following user " + userId + ": " + e.getMessage());
+            return error(e);
+        }
+    }
+
+    // Отписаться от автора
+    @DeleteMapping("/{userId}/follow")
+    public ResponseEntity<?> unfollow(@PathVariable Long userId, @CurrentUser UserDetailsImpl currentUser) {
+        try {
+            if (currentUser == null) {
+                throw new RuntimeException("Пользователь не аутентифицирован");
+            }
+            subscriptionService.unfollow(currentUser.getId(), userId);
+            return ResponseEntity.ok(state(false, userId, "Вы отписались от автора"));
+        } catch (Exception e) {
+            System.err.println("❌ SubscriptionController: Error unfollowing user " + userId + ": " + e.getMessage());
+            return error(e);
+        }
+    }
+
+    // Статус подписки текущего пользователя и количество подписчиков автора
+    @GetMapping("/{userId}/follow")
+    public ResponseEntity<?> getFollowStatus(@PathVariable Long userId, @CurrentUser UserDetailsImpl currentUser) {
+        boolean following = currentUser != null && subscriptionService.isFollowing(currentUser.getId(), userId);
+        return ResponseEntity.ok(state(following, userId, null));
+    }
+
+    private Map<String, Object> state(boolean following, Long userId, String message) {
+        Integer followers = subscriptionService.getFollowerCount(userId);
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("following", following);
+        response.put("followers", followers != null ? followers : 0);
+        if (message != null) {
+            response.put("message", message);
+        }
+        return response;
+    }
+
+    private ResponseEntity<?> error(Exception e) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", "Ошибка: " + e.getMessage());
+        return ResponseEntity.badRequest().body(response);
+    }
+}
@@ -1,11 +1,12 @@
 package com.postread.controllers;
 
+import com.postread.security.CurrentUser;
 import com.postread.security.User;
 import com.postread.repositories.UserRepository;
+import com.postread.services.ImageDerivativeService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -24,16 +25,19 @@ public class UserAvatarController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
     @Value("${app.upload.dir:uploads}")
     private String uploadDir;
 
     @PostMapping("/avatar/upload")
     public ResponseEntity<?> uploadAvatar(@RequestParam("file") MultipartFile file,
-                                          Authentication authentication) {
+                                          @CurrentUser User user) {
         try {
-            String username = authentication.getName();
-            User user = userRepository.findByName(username)
-                    .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
+            if (user == null) {
+                throw new RuntimeException("Пользователь не найден");
+            }
 
             // Создаем директорию если не существует
             Path uploadPath = Paths.get(uploadDir);
@@ -52,11 +56,14 @@ public class UserAvatarController {
             // Сохраняем файл
             Path filePath = uploadPath.resolve(fileName);
             Files.copy(file.getInputStream(), filePath);
+            imageDerivativeService.submitAvatar(fileName);
 
             // Обновляем аватар пользователя
+            String previousIcon = user.getIcon();
             String avatarUrl = "/uploads/" + fileName;
             user.setIcon(avatarUrl);
             userRepository.save(user);
+            imageDerivativeService.deleteAvatarIfUnused(previousIcon);
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -79,15 +86,17 @@ public class UserAvatarController {
     }
 
     @PostMapping("/avatar/remove")
-    public ResponseEntity<?> removeAvatar(Authentication authentication) {
+    public ResponseEntity<?> removeAvatar(@CurrentUser User user) {
         try {
-            String username = authentication.getName();
-            User user = userRepository.findByName(username)
-                    .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
+            if (user == null) {
+                throw new RuntimeException("Пользователь не найден");
+            }
 
             // Удаляем аватар
+            String previousIcon = user.getIcon();
             user.setIcon(null);
             userRepository.save(user);
+            imageDerivativeService.deleteAvatarIfUnused(previousIcon);
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
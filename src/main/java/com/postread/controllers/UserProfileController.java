@@ -2,14 +2,16 @@ package com.postread.controllers;
 
 import com.postread.data.Article;
 import com.postread.data.Bookmark;
+import com.postread.dto.ArticleDTO;
 import com.postread.repositories.ArticleRepository;
 import com.postread.repositories.UserRepository;
+import com.postread.security.CurrentUser;
 import com.postread.security.User;
 import com.postread.services.ArticleManagementService;
 import com.postread.services.ArticleService;
 import com.postread.services.BookmarkService;
+import com.postread.services.ImageDerivativeService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -39,14 +41,20 @@ public class UserProfileController {
     @Autowired
     private ArticleManagementService articleManagementService;
 
+    @Autowired
+    private ArticleService articleService;
+
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
     @PostMapping("/profile")
     public String updateProfile(@ModelAttribute("user") User userForm,
-                                Authentication authentication,
+                                @CurrentUser User user,
                                 RedirectAttributes redirectAttributes) {
         try {
-            String username = authentication.getName();
-            User user = userRepository.findByName(username)
-                    .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
+            if (user == null) {
+                throw new RuntimeException("Пользователь не найден");
+            }
 
             // Проверяем уникальность email (если изменился)
             if (!user.getEmail().equals(userForm.getEmail())) {
@@ -69,9 +77,11 @@ public class UserProfileController {
             user.setEmail(userForm.getEmail());
             user.setBirthDate(userForm.getBirthDate());
             user.setDescription(userForm.getDescription() != null ? userForm.getDescription() : "");
+            String previousIcon = user.getIcon();
             user.setIcon(userForm.getIcon() != null ? userForm.getIcon() : "");
 
             userRepository.save(user);
+            imageDerivativeService.deleteAvatarIfUnused(previousIcon);
             redirectAttributes.addFlashAttribute("success", "Профиль успешно обновлен");
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("error", "Ошибка при обновлении профиля: " + e.getMessage());
@@ -81,10 +91,10 @@ public class UserProfileController {
     }
 
     @GetMapping("/profile")
-    public String userProfile(Model model, Authentication authentication) {
-        String username = authentication.getName();
-        User user = userRepository.findByName(username)
-                .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
+    public String userProfile(Model model, @CurrentUser User user) {
+        if (user == null) {
+            throw new RuntimeException("Пользователь не найден");
+        }
 
         // Инициализируем null поля
         if (user.getDescription() == null) {
@@ -94,13 +104,12 @@ public class UserProfileController {
             user.setIcon("");
         }
 
-        List<Article> drafts = articleManagementService.getUserDrafts(user.getId());
-        List<Article> published = articleManagementService.getUserPublishedArticles(user.getId());
+        List<ArticleDTO> drafts = articleService.createArticleDTOs(
+                articleManagementService.getUserDrafts(user.getId()));
+        List<ArticleDTO> published = articleService.createArticleDTOs(
+                articleManagementService.getUserPublishedArticles(user.getId()));
 
-        model.addAttribute("drafts", drafts);
-        model.addAttribute("published", published);
 //        // Получаем статьи пользователя
-        List<Article> userArticles = articleRepository.findByAuthorId(user.getId());
 //        List<Article> drafts = userArticles.stream()
 //                .filter(article -> !article.isPublished())
 //                .collect(Collectors.toList());
@@ -114,10 +123,11 @@ public class UserProfileController {
 
         // Статистика
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalArticles", userArticles.size());
+        stats.put("totalArticles", drafts.size() + published.size());
         stats.put("publishedArticles", published.size());
         stats.put("draftArticles", drafts.size());
-        stats.put("totalViews", userArticles.stream().mapToInt(Article::getViewCount).sum());
+        stats.put("totalViews", drafts.stream().mapToInt(ArticleDTO::getViewCount).sum()
+                + published.stream().mapToInt(ArticleDTO::getViewCount).sum());
 
         model.addAttribute("user", user);
         model.addAttribute("drafts", drafts);
@@ -23,7 +23,8 @@ import com.postread.security.User;
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Article {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "articles_id_seq")
+    @SequenceGenerator(name = "articles_id_seq", sequenceName = "articles_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.EAGER)
@@ -48,12 +49,22 @@ public class Article {
     @Column(name = "view_count")
     private int viewCount = 0;
 
+    // Время первой публикации, повторная публикация его не меняет
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt;
+
+    // Время мягкого удаления: статья скрыта и ждет фоновой очистки
+    @Column(name = "deleted_at")
+    @JsonIgnore
+    private LocalDateTime deletedAt;
+
     @OneToMany(mappedBy = "article", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     @OrderBy("order ASC")
     @JsonIgnore
     private List<ArticleBlock> blocks = new ArrayList<>();
 
-    @ManyToMany(fetch = FetchType.EAGER, cascade = {CascadeType.PERSIST, CascadeType.MERGE})
+    // Без каскада: теги заранее создаются TagService.findOrCreateTags, здесь хранятся только ссылки
+    @ManyToMany(fetch = FetchType.EAGER)
     @JoinTable(
             name = "articles_tags",
             joinColumns = @JoinColumn(name = "article_id"),
@@ -81,11 +92,17 @@ public class Article {
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        if (published) {
+            publishedAt = createdAt;
+        }
     }
 
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        if (published && publishedAt == null) {
+            publishedAt = updatedAt;
+        }
     }
 
     public boolean hasTags() {
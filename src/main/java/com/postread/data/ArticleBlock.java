@@ -6,7 +6,11 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.HexFormat;
 
 @Entity
 @Table(name = "article_blocks")
@@ -15,7 +19,8 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 public class ArticleBlock {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "article_blocks_id_seq")
+    @SequenceGenerator(name = "article_blocks_id_seq", sequenceName = "article_blocks_id_seq", allocationSize = 1)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -35,8 +40,33 @@ public class ArticleBlock {
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
+    // SHA-256 от типа и содержимого, см. contentHash()
+    @Column(name = "content_hash", length = 64)
+    @JsonIgnore
+    private String contentHash;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
+        contentHash = contentHash(type, content);
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        contentHash = contentHash(type, content);
+    }
+
+    /**
+     * Хэш блока для сравнения без чтения содержимого.
+     * Должен совпадать с выражением в V13__add_article_block_hash.sql.
+     */
+    public static String contentHash(String type, String content) {
+        try {
+            String raw = type + "\n" + (content != null ? content : "");
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(raw.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 }
\ No newline at end of file
@@ -21,7 +21,8 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 public class Bookmark {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bookmarks_id_seq")
+    @SequenceGenerator(name = "bookmarks_id_seq", sequenceName = "bookmarks_id_seq", allocationSize = 1)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
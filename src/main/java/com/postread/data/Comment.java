@@ -3,6 +3,8 @@ package com.postread.data;
 import com.postread.security.User;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -11,11 +13,13 @@ import java.time.ZonedDateTime;
 @Data
 @Entity
 @Table(name = "comments", indexes = {
-        @Index(name = "idx_comments_article", columnList = "article_id")
+        @Index(name = "idx_comments_article", columnList = "article_id"),
+        @Index(name = "idx_comments_thread", columnList = "root_id, path")
 })
 public class Comment {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "comments_id_seq")
+    @SequenceGenerator(name = "comments_id_seq", sequenceName = "comments_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -35,10 +39,27 @@ public class Comment {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
-    @ManyToOne(fetch=FetchType.EAGER)
+    @ManyToOne(fetch=FetchType.LAZY)
     @JoinColumn(name = "reference_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Comment parentComment;
 
+    @Column(name = "reference_id", insertable = false, updatable = false)
+    private Long parentCommentId;
+
+    // Корневой комментарий ветки (у самого корня совпадает с id)
+    @Column(name = "root_id")
+    private Long rootId;
+
+    // Материализованный путь: id предков через точку, см. V11__add_comment_paths.sql
+    @Column(name = "path", columnDefinition = "TEXT")
+    private String path;
+
+    // Количество ответов во всей ветке, ведется только у корневого комментария
+    @Column(name = "reply_count", insertable = false, updatable = false)
+    private int replyCount;
+
     @PrePersist
     protected void onCreate() {
 //        ZoneId moscowZone = ZoneId.of("Europe/Moscow");
@@ -8,13 +8,15 @@ import lombok.NoArgsConstructor;
 @Data
 @Entity
 @Table(name = "multimedia", indexes = {
-        @Index(name = "idx_multimedia_article", columnList = "article_id")
+        @Index(name = "idx_multimedia_article", columnList = "article_id"),
+        @Index(name = "idx_multimedia_original", columnList = "original_file_name")
 })
 @AllArgsConstructor
 @NoArgsConstructor
 public class Multimedia {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "multimedia_id_seq")
+    @SequenceGenerator(name = "multimedia_id_seq", sequenceName = "multimedia_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -32,4 +34,14 @@ public class Multimedia {
 
     @Column(name="position_in_text")
     private Integer positionInText;
+
+    // Исходный файл, из которого получен вариант (у самого исходника совпадает с fileName)
+    @Column(name="original_file_name")
+    private String originalFileName;
+
+    @Column(name="width")
+    private Integer width;
+
+    @Column(name="height")
+    private Integer height;
 }
\ No newline at end of file
@@ -19,7 +19,8 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 public class Reaction {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reactions_id_seq")
+    @SequenceGenerator(name = "reactions_id_seq", sequenceName = "reactions_id_seq", allocationSize = 1)
     private Long id;
 
     @ManyToOne
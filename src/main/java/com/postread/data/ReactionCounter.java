@@ -0,0 +1,32 @@
+package com.postread.data;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+@Data
+@Entity
+@Table(name = "reaction_counters")
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReactionCounter {
+    @Id
+    @Column(name = "article_id")
+    private Long articleId;
+
+    // counts[code - 1] - количество реакций с кодом ReactionType.code
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "counts", nullable = false)
+    private int[] counts;
+
+    @Column(name = "total", nullable = false)
+    private int total;
+
+    public long getCount(ReactionType type) {
+        int index = type.getCode() - 1;
+        return counts != null && index < counts.length ? counts[index] : 0L;
+    }
+}
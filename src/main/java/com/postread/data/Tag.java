@@ -12,7 +12,8 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class Tag {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tags_id_seq")
+    @SequenceGenerator(name = "tags_id_seq", sequenceName = "tags_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "name", nullable = false, length = 50)
@@ -1,5 +1,6 @@
 package com.postread.data;
 
+import com.postread.security.PrincipalCacheListener;
 import com.postread.security.User;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -10,6 +11,7 @@ import java.io.Serializable;
 
 @Data
 @Entity
+@EntityListeners(PrincipalCacheListener.class)
 @Table(name = "users_roles", indexes = {
         @Index(name = "idx_users_roles_role", columnList = "role_id")
 })
@@ -55,4 +55,9 @@ public class ArticleDTO {
     public boolean isHasComments() {
         return commentsCount != null && commentsCount > 0;
     }
+
+    // Для шаблонов, которые раньше работали с сущностью Article
+    public boolean hasTags() {
+        return tags != null && !tags.isEmpty();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.postread.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ArticleEngagementDTO {
+    private boolean bookmarked;
+
+    // Реакция текущего пользователя (null - реакции нет)
+    private Integer reaction;
+    private String reactionEmoji;
+}
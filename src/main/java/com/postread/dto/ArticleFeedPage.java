@@ -0,0 +1,18 @@
+package com.postread.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ArticleFeedPage {
+    private List<ArticleSimpleDTO> articles;
+
+    // Непрозрачный курсор для следующей страницы (null, если страниц больше нет)
+    private String nextCursor;
+    private boolean hasMore;
+}
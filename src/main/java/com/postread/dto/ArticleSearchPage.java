@@ -0,0 +1,21 @@
+package com.postread.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ArticleSearchPage {
+    private List<ArticleDTO> articles;
+    private long total;
+    private int page;
+    private int size;
+
+    public boolean isHasMore() {
+        return (long) (page + 1) * size < total;
+    }
+}
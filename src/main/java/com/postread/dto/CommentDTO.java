@@ -12,6 +12,8 @@ public class CommentDTO {
     private UserSimpleDTO author;
     private Long articleId;
     private Long parentCommentId; // для ответов на комментарии
+    private Long rootId; // корневой комментарий ветки
+    private int depth; // уровень вложенности, у корневого 0
 
     public CommentDTO() {}
 }
\ No newline at end of file
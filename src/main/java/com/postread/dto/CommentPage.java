@@ -0,0 +1,18 @@
+package com.postread.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CommentPage {
+    private List<CommentThreadDTO> threads;
+
+    // Непрозрачный курсор для следующей страницы корневых комментариев
+    private String nextCursor;
+    private boolean hasMore;
+}
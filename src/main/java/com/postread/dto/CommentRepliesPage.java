@@ -0,0 +1,18 @@
+package com.postread.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CommentRepliesPage {
+    private List<CommentDTO> replies;
+
+    // Курсор для следующей порции ответов ветки
+    private String nextCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,24 @@
+package com.postread.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CommentThreadDTO {
+    private CommentDTO comment;
+
+    // Первые ответы ветки в порядке обхода дерева
+    private List<CommentDTO> replies;
+
+    // Всего ответов в ветке
+    private int replyCount;
+
+    // Курсор для догрузки ответов (null, если все ответы уже загружены)
+    private String nextRepliesCursor;
+    private boolean hasMoreReplies;
+}
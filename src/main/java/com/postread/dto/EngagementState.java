@@ -0,0 +1,17 @@
+package com.postread.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class EngagementState {
+    private boolean authenticated;
+
+    // Состояние по id статьи; статьи без закладки и реакции в ответ не попадают
+    private Map<Long, ArticleEngagementDTO> articles;
+}
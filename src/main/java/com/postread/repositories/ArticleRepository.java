@@ -3,6 +3,8 @@ package com.postread.repositories;
 import com.postread.data.Article;
 import com.postread.data.ArticleBlock;
 import com.postread.security.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -10,6 +12,8 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,18 +21,98 @@ import java.util.Optional;
 public interface ArticleRepository extends JpaRepository<Article, Long> {
 
         // Существующие методы
+        @EntityGraph(attributePaths = {"author", "tags", "reviewForArticle"})
         List<Article> findAllByPublishedTrueOrderByCreatedAtDesc();
+        @EntityGraph(attributePaths = {"author", "tags", "reviewForArticle"})
         List<Article> findByTitleContainingIgnoreCaseAndPublishedTrue(String title);
 
         // Методы для поиска по тегам
+        @EntityGraph(attributePaths = {"author", "tags", "reviewForArticle"})
         @Query("SELECT DISTINCT a FROM Article a JOIN a.tags t WHERE t.name IN :tagNames AND a.published = true")
         List<Article> findByTagsNameInAndPublishedTrue(@Param("tagNames") List<String> tagNames);
 
+        @EntityGraph(attributePaths = {"author", "tags", "reviewForArticle"})
         @Query("SELECT DISTINCT a FROM Article a JOIN a.tags t WHERE a.title LIKE %:title% AND t.name IN :tagNames AND a.published = true")
         List<Article> findByTitleContainingIgnoreCaseAndTagsNameInAndPublishedTrue(
                 @Param("title") String title,
                 @Param("tagNames") List<String> tagNames);
 
+        // Строки [articleId, tagName, createdAt, publishedAt] опубликованных статей для построения индекса тегов
+        @Query("SELECT a.id, t.name, a.createdAt, a.publishedAt FROM Article a JOIN a.tags t WHERE a.published = true")
+        List<Object[]> findPublishedArticleTagPairs();
+
+        // Полнотекстовый поиск: id опубликованных статей по релевантности
+        @Query(value = "SELECT CAST(a.id AS BIGINT) FROM articles a, websearch_to_tsquery('russian', :query) q " +
+                "WHERE a.is_published = true AND a.search_vector @@ q " +
+                "ORDER BY ts_rank_cd(a.search_vector, q) DESC, a.id DESC " +
+                "LIMIT :limit OFFSET :offset", nativeQuery = true)
+        List<Long> fullTextSearchIds(@Param("query") String query,
+                                     @Param("limit") int limit,
+                                     @Param("offset") long offset);
+
+        @Query(value = "SELECT COUNT(*) FROM articles a " +
+                "WHERE a.is_published = true AND a.search_vector @@ websearch_to_tsquery('russian', :query)",
+                nativeQuery = true)
+        long countFullTextSearch(@Param("query") String query);
+
+        // Полнотекстовый поиск с фильтром по тегам (хотя бы один из тегов)
+        @Query(value = "SELECT CAST(a.id AS BIGINT) FROM articles a, websearch_to_tsquery('russian', :query) q " +
+                "WHERE a.is_published = true AND a.search_vector @@ q " +
+                "AND EXISTS (SELECT 1 FROM articles_tags at JOIN tags t ON t.id = at.tag_id " +
+                "WHERE at.article_id = a.id AND t.name IN (:tagNames)) " +
+                "ORDER BY ts_rank_cd(a.search_vector, q) DESC, a.id DESC " +
+                "LIMIT :limit OFFSET :offset", nativeQuery = true)
+        List<Long> fullTextSearchIdsWithTags(@Param("query") String query,
+                                             @Param("tagNames") List<String> tagNames,
+                                             @Param("limit") int limit,
+                                             @Param("offset") long offset);
+
+        @Query(value = "SELECT COUNT(*) FROM articles a " +
+                "WHERE a.is_published = true AND a.search_vector @@ websearch_to_tsquery('russian', :query) " +
+                "AND EXISTS (SELECT 1 FROM articles_tags at JOIN tags t ON t.id = at.tag_id " +
+                "WHERE at.article_id = a.id AND t.name IN (:tagNames))", nativeQuery = true)
+        long countFullTextSearchWithTags(@Param("query") String query,
+                                         @Param("tagNames") List<String> tagNames);
+
+        // Полнотекстовый поиск с фильтром по тегам (все теги)
+        @Query(value = "SELECT CAST(a.id AS BIGINT) FROM articles a, websearch_to_tsquery('russian', :query) q " +
+                "WHERE a.is_published = true AND a.search_vector @@ q " +
+                "AND (SELECT COUNT(DISTINCT t.name) FROM articles_tags at JOIN tags t ON t.id = at.tag_id " +
+                "WHERE at.article_id = a.id AND t.name IN (:tagNames)) = :tagCount " +
+                "ORDER BY ts_rank_cd(a.search_vector, q) DESC, a.id DESC " +
+                "LIMIT :limit OFFSET :offset", nativeQuery = true)
+        List<Long> fullTextSearchIdsWithAllTags(@Param("query") String query,
+                                                @Param("tagNames") List<String> tagNames,
+                                                @Param("tagCount") long tagCount,
+                                                @Param("limit") int limit,
+                                                @Param("offset") long offset);
+
+        @Query(value = "SELECT COUNT(*) FROM articles a " +
+                "WHERE a.is_published = true AND a.search_vector @@ websearch_to_tsquery('russian', :query) " +
+                "AND (SELECT COUNT(DISTINCT t.name) FROM articles_tags at JOIN tags t ON t.id = at.tag_id " +
+                "WHERE at.article_id = a.id AND t.name IN (:tagNames)) = :tagCount", nativeQuery = true)
+        long countFullTextSearchWithAllTags(@Param("query") String query,
+                                            @Param("tagNames") List<String> tagNames,
+                                            @Param("tagCount") long tagCount);
+
+        // Пересчет поискового вектора статьи (после сохранения заголовка, описания и блоков)
+        @Modifying
+        @Query(value = "UPDATE articles SET search_vector = article_search_vector(id) WHERE id = :articleId",
+                nativeQuery = true)
+        void updateSearchVector(@Param("articleId") Long articleId);
+
+        // Загрузка статей по списку id (порядок восстанавливается вызывающим кодом)
+        @EntityGraph(attributePaths = {"author", "tags", "reviewForArticle"})
+        @Query("SELECT a FROM Article a WHERE a.id IN :ids")
+        List<Article> findAllByIdIn(@Param("ids") Collection<Long> ids);
+
+        // Опубликованные статьи постранично
+        @EntityGraph(attributePaths = {"author"})
+        @Query("SELECT a FROM Article a WHERE a.published = true ORDER BY a.createdAt DESC, a.id DESC")
+        List<Article> findPublishedPage(Pageable pageable);
+
+        long countByPublishedTrue();
+
         // Новые методы для работы с рецензиями
         List<Article> findByReviewForArticleAndPublishedTrueOrderByCreatedAtDesc(Article article);
         boolean existsByAuthorAndReviewForArticle(User author, Article reviewForArticle);
@@ -37,13 +121,38 @@ public interface ArticleRepository extends JpaRepository<Article, Long> {
         @Query("SELECT a FROM Article a WHERE a.reviewForArticle IS NULL AND a.published = true ORDER BY a.createdAt DESC")
         List<Article> findAllOriginalArticles();
 
+        // Keyset-пагинация ленты: первая страница
+        @EntityGraph(attributePaths = {"author"})
+        @Query("SELECT a FROM Article a WHERE a.reviewForArticle IS NULL AND a.published = true " +
+                "ORDER BY a.createdAt DESC, a.id DESC")
+        List<Article> findOriginalArticlesFeed(Pageable pageable);
+
+        // Keyset-пагинация ленты: страница после курсора (createdAt, id)
+        @EntityGraph(attributePaths = {"author"})
+        @Query("SELECT a FROM Article a WHERE a.reviewForArticle IS NULL AND a.published = true " +
+                "AND (a.createdAt < :createdAt OR (a.createdAt = :createdAt AND a.id < :id)) " +
+                "ORDER BY a.createdAt DESC, a.id DESC")
+        List<Article> findOriginalArticlesFeedAfter(@Param("createdAt") LocalDateTime createdAt,
+                                                    @Param("id") Long id,
+                                                    Pageable pageable);
+
+        // Карточки для рейтинга "в тренде": только опубликованные оригиналы из переданных id
+        @EntityGraph(attributePaths = {"author"})
+        @Query("SELECT a FROM Article a WHERE a.id IN :ids AND a.reviewForArticle IS NULL " +
+                "AND a.published = true AND a.deletedAt IS NULL")
+        List<Article> findPublishedOriginalsByIds(@Param("ids") Collection<Long> ids);
+
         // Метод для поиска рецензий пользователя
-        List<Article> findByAuthorAndReviewForArticleIsNotNullOrderByCreatedAtDesc(User author);
+        @Query("SELECT a FROM Article a WHERE a.author = :author AND a.reviewForArticle IS NOT NULL " +
+                "AND a.deletedAt IS NULL ORDER BY a.createdAt DESC")
+        List<Article> findByAuthorAndReviewForArticleIsNotNullOrderByCreatedAtDesc(@Param("author") User author);
 
-        // Стандартный метод поиска по ID
-        Optional<Article> findById(Long id);
+        // Стандартный метод поиска по ID (удаленные статьи не возвращаются)
+        @Query("SELECT a FROM Article a WHERE a.id = :id AND a.deletedAt IS NULL")
+        Optional<Article> findById(@Param("id") Long id);
 
-        List<Article> findByAuthorId(Long id);
+        @Query("SELECT a FROM Article a WHERE a.author.id = :id AND a.deletedAt IS NULL")
+        List<Article> findByAuthorId(@Param("id") Long id);
 
         // Безопасные методы для работы с рецензиями
         @Query("SELECT COUNT(r) FROM Article r WHERE r.reviewForArticle.id = :articleId AND r.published = true")
@@ -52,8 +161,12 @@ public interface ArticleRepository extends JpaRepository<Article, Long> {
         @Query("SELECT CASE WHEN COUNT(r) > 0 THEN true ELSE false END FROM Article r WHERE r.reviewForArticle.id = :articleId AND r.published = true")
         boolean existsReviewsByArticleId(@Param("articleId") Long articleId);
 
+        // Количество рецензий сразу для нескольких статей: [articleId, count]
+        @Query("SELECT r.reviewForArticle.id, COUNT(r) FROM Article r WHERE r.reviewForArticle.id IN :articleIds AND r.published = true GROUP BY r.reviewForArticle.id")
+        List<Object[]> countReviewsByArticleIds(@Param("articleIds") Collection<Long> articleIds);
+
         // Исправленные методы для загрузки статьи с инициализированными блоками
-        @Query("SELECT DISTINCT a FROM Article a LEFT JOIN FETCH a.blocks b WHERE a.id = :id ORDER BY b.order ASC")
+        @Query("SELECT DISTINCT a FROM Article a LEFT JOIN FETCH a.blocks b WHERE a.id = :id AND a.deletedAt IS NULL ORDER BY b.order ASC")
         Optional<Article> findByIdWithBlocks(@Param("id") Long id);
 
 
@@ -69,15 +182,19 @@ public interface ArticleRepository extends JpaRepository<Article, Long> {
         void incrementViewCount(@Param("articleId") Long articleId);
 
         // Дополнительный метод для получения статьи только с автором
-        @Query("SELECT a FROM Article a LEFT JOIN FETCH a.author WHERE a.id = :id")
+        @Query("SELECT a FROM Article a LEFT JOIN FETCH a.author WHERE a.id = :id AND a.deletedAt IS NULL")
         Optional<Article> findByIdWithAuthor(@Param("id") Long id);
 
         // НОВЫЕ МЕТОДЫ: Получение статей пользователя с фильтрацией
+        @EntityGraph(attributePaths = {"author", "tags", "reviewForArticle"})
         List<Article> findByAuthorAndPublishedTrueOrderByCreatedAtDesc(User author);
-        List<Article> findByAuthorAndPublishedFalseOrderByCreatedAtDesc(User author);
+        @EntityGraph(attributePaths = {"author", "tags", "reviewForArticle"})
+        @Query("SELECT a FROM Article a WHERE a.author = :author AND a.published = false " +
+                "AND a.deletedAt IS NULL ORDER BY a.createdAt DESC")
+        List<Article> findByAuthorAndPublishedFalseOrderByCreatedAtDesc(@Param("author") User author);
 
         // Проверка принадлежности статьи пользователю
-        @Query("SELECT CASE WHEN COUNT(a) > 0 THEN true ELSE false END FROM Article a WHERE a.id = :articleId AND a.author.id = :userId")
+        @Query("SELECT CASE WHEN COUNT(a) > 0 THEN true ELSE false END FROM Article a WHERE a.id = :articleId AND a.author.id = :userId AND a.deletedAt IS NULL")
         boolean existsByIdAndAuthorId(@Param("articleId") Long articleId, @Param("userId") Long userId);
 
 
@@ -95,15 +212,17 @@ public interface ArticleRepository extends JpaRepository<Article, Long> {
         void deleteArticleBlocksByArticleId(@Param("articleId") Long articleId);
 
         // Метод для получения статьи без блоков
-        @Query("SELECT a FROM Article a LEFT JOIN FETCH a.author LEFT JOIN FETCH a.tags WHERE a.id = :id")
+        @Query("SELECT a FROM Article a LEFT JOIN FETCH a.author LEFT JOIN FETCH a.tags WHERE a.id = :id AND a.deletedAt IS NULL")
         Optional<Article> findByIdWithAuthorAndTags(@Param("id") Long id);
 
         // Метод для получения статьи с блоками
-        @Query("SELECT DISTINCT a FROM Article a LEFT JOIN FETCH a.author LEFT JOIN FETCH a.tags LEFT JOIN FETCH a.blocks b WHERE a.id = :id ORDER BY b.order ASC")
+        @Query("SELECT DISTINCT a FROM Article a LEFT JOIN FETCH a.author LEFT JOIN FETCH a.tags LEFT JOIN FETCH a.blocks b WHERE a.id = :id AND a.deletedAt IS NULL ORDER BY b.order ASC")
         Optional<Article> findByIdWithAuthorAndTagsAndBlocks(@Param("id") Long id);
 
         // Принудительная синхронизация с БД
         void flush();
 
-        List<Article> findByReviewForArticleId(Long articleId);
+        // id оригинальной статьи, если статья является рецензией
+        @Query("SELECT a.reviewForArticle.id FROM Article a WHERE a.id = :articleId AND a.reviewForArticle IS NOT NULL")
+        Optional<Long> findReviewForArticleId(@Param("articleId") Long articleId);
 }
\ No newline at end of file
@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,9 +20,11 @@ public interface BookmarkRepository extends JpaRepository<Bookmark, Long> {
     boolean existsByUserAndArticle(User user, Article article);
     Optional<Bookmark> findByUserAndArticle(User user, Article article);
 
-    @Query("SELECT b FROM Bookmark b JOIN FETCH b.article WHERE b.user = :user ORDER BY b.addedAt DESC")
+    @Query("SELECT b FROM Bookmark b JOIN FETCH b.article a WHERE b.user = :user AND a.deletedAt IS NULL ORDER BY b.addedAt DESC")
     List<Bookmark> findByUserWithArticles(@Param("user") User user);
-    long countByUser(User user);
+
+    @Query("SELECT COUNT(b) FROM Bookmark b WHERE b.user = :user AND b.article.deletedAt IS NULL")
+    long countByUser(@Param("user") User user);
     void deleteByUserAndArticle(User user, Article article);
 
     // ДОБАВЬТЕ ЭТИ МЕТОДЫ:
@@ -36,4 +39,8 @@ public interface BookmarkRepository extends JpaRepository<Bookmark, Long> {
     void deleteByUserAndArticle(@Param("userId") Long userId, @Param("articleId") Long articleId);
 
     void deleteByArticleId(Long articleId);
+
+    // Какие из статей в закладках у пользователя (одним запросом для страницы списка)
+    @Query("SELECT b.article.id FROM Bookmark b WHERE b.user.id = :userId AND b.article.id IN :articleIds")
+    List<Long> findBookmarkedArticleIds(@Param("userId") Long userId, @Param("articleIds") Collection<Long> articleIds);
 }
\ No newline at end of file
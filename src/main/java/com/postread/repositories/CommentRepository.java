@@ -1,6 +1,7 @@
 package com.postread.repositories;
 
 import com.postread.data.Comment;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -8,6 +9,8 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -26,9 +29,64 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
     // Найти ответы на конкретный комментарий
     List<Comment> findByParentCommentIdOrderByCreatedAtAsc(Long parentCommentId);
 
+    // Первая страница корневых комментариев статьи (новые сверху)
+    @Query("SELECT c FROM Comment c JOIN FETCH c.user " +
+            "WHERE c.article.id = :articleId AND c.parentComment IS NULL " +
+            "ORDER BY c.createdAt DESC, c.id DESC")
+    List<Comment> findRootPage(@Param("articleId") Long articleId, Pageable pageable);
+
+    // Следующая страница корневых комментариев после позиции (createdAt, id)
+    @Query("SELECT c FROM Comment c JOIN FETCH c.user " +
+            "WHERE c.article.id = :articleId AND c.parentComment IS NULL " +
+            "AND (c.createdAt < :createdAt OR (c.createdAt = :createdAt AND c.id < :id)) " +
+            "ORDER BY c.createdAt DESC, c.id DESC")
+    List<Comment> findRootPageAfter(@Param("articleId") Long articleId,
+                                    @Param("createdAt") LocalDateTime createdAt,
+                                    @Param("id") Long id,
+                                    Pageable pageable);
+
+    // Первые :limit ответов каждой из веток в порядке обхода дерева вместе с автором, без загрузки сущностей:
+    // [id, content, createdAt, updatedAt, articleId, parentCommentId, rootId, path, userId, userName, userIcon]
+    @Query(value = "SELECT CAST(r.id AS BIGINT), r.comment_text, r.created_at, r.updated_at, " +
+            "CAST(r.article_id AS BIGINT), CAST(r.reference_id AS BIGINT), CAST(r.root_id AS BIGINT), r.path, " +
+            "CAST(u.id AS BIGINT), u.name, u.icon " +
+            "FROM comments root " +
+            "CROSS JOIN LATERAL (" +
+            "    SELECT c.* FROM comments c " +
+            "    WHERE c.root_id = root.id AND c.path > root.path " +
+            "    ORDER BY c.path LIMIT :limit" +
+            ") r " +
+            "LEFT JOIN users u ON u.id = r.user_id " +
+            "WHERE root.id IN :rootIds " +
+            "ORDER BY r.root_id, r.path",
+            nativeQuery = true)
+    List<Object[]> findFirstRepliesOfThreads(@Param("rootIds") Collection<Long> rootIds,
+                                             @Param("limit") int limit);
+
+    // Ответы ветки после указанного пути
+    @Query("SELECT c FROM Comment c JOIN FETCH c.user " +
+            "WHERE c.rootId = :rootId AND c.path > :afterPath " +
+            "ORDER BY c.path")
+    List<Comment> findThreadRepliesAfter(@Param("rootId") Long rootId,
+                                         @Param("afterPath") String afterPath,
+                                         Pageable pageable);
+
+    // Размер поддерева комментария (сам комментарий и все ответы на него)
+    @Query("SELECT COUNT(c) FROM Comment c " +
+            "WHERE c.rootId = :rootId AND (c.path = :path OR c.path LIKE CONCAT(:path, '.%'))")
+    long countSubtree(@Param("rootId") Long rootId, @Param("path") String path);
+
+    @Modifying
+    @Query(value = "UPDATE comments SET reply_count = reply_count + :delta WHERE id = :rootId", nativeQuery = true)
+    void adjustReplyCount(@Param("rootId") Long rootId, @Param("delta") long delta);
+
     // Количество комментариев для статьи
     Long countByArticleId(Long articleId);
 
+    // Количество комментариев сразу для нескольких статей: [articleId, count]
+    @Query("SELECT c.article.id, COUNT(c) FROM Comment c WHERE c.article.id IN :articleIds GROUP BY c.article.id")
+    List<Object[]> countByArticleIds(@Param("articleIds") Collection<Long> articleIds);
+
     // Удалить все комментарии для статьи
     @Modifying
     @Transactional
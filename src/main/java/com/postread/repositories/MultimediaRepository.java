@@ -10,4 +10,5 @@ import java.util.List;
 public interface MultimediaRepository extends JpaRepository<Multimedia, Long> {
     List<Multimedia> findByArticleId(Long articleId);
     void deleteByArticleId(Long articleId);
+    List<Multimedia> findByOriginalFileNameOrderByWidthAsc(String originalFileName);
 }
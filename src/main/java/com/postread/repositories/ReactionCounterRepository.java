@@ -0,0 +1,69 @@
+package com.postread.repositories;
+
+import com.postread.data.ReactionCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ReactionCounterRepository extends JpaRepository<ReactionCounter, Long> {
+
+    // Создать строку счетчиков для статьи, если ее еще нет
+    @Modifying
+    @Query(value = "INSERT INTO reaction_counters (article_id) VALUES (:articleId) ON CONFLICT (article_id) DO NOTHING",
+            nativeQuery = true)
+    void ensureExists(@Param("articleId") Long articleId);
+
+    // Атомарно изменить счетчик одного типа реакции и общий счетчик
+    @Modifying
+    @Query(value = "UPDATE reaction_counters SET counts[:type] = counts[:type] + :delta, total = total + :delta " +
+            "WHERE article_id = :articleId", nativeQuery = true)
+    void adjust(@Param("articleId") Long articleId, @Param("type") int type, @Param("delta") int delta);
+
+    // Очередная порция id статей для сверки счетчиков
+    @Query(value = "SELECT CAST(id AS BIGINT) FROM articles WHERE id > :afterId ORDER BY id LIMIT :limit",
+            nativeQuery = true)
+    List<Long> findArticleIdsAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "INSERT INTO reaction_counters (article_id) SELECT id FROM articles WHERE id IN (:articleIds) " +
+            "ON CONFLICT (article_id) DO NOTHING", nativeQuery = true)
+    void ensureExistAll(@Param("articleIds") Collection<Long> articleIds);
+
+    // Блокировка строк счетчиков: параллельные adjust() ждут конца сверки
+    @Query(value = "SELECT CAST(article_id AS BIGINT) FROM reaction_counters WHERE article_id IN (:articleIds) " +
+            "ORDER BY article_id FOR UPDATE", nativeQuery = true)
+    List<Long> lockAll(@Param("articleIds") Collection<Long> articleIds);
+
+    // Пересчет по таблице reactions; записываются только разошедшиеся счетчики
+    @Modifying
+    @Query(value = "UPDATE reaction_counters c SET counts = fresh.counts, total = fresh.total FROM (" +
+            "SELECT rc.article_id, " +
+            "ARRAY(SELECT CAST(COUNT(r.id) AS INTEGER) FROM generate_series(1, 12) AS g(code) " +
+            "LEFT JOIN reactions r ON r.article_id = rc.article_id AND r.type = g.code ORDER BY g.code) AS counts, " +
+            "(SELECT CAST(COUNT(*) AS INTEGER) FROM reactions r WHERE r.article_id = rc.article_id) AS total " +
+            "FROM reaction_counters rc WHERE rc.article_id IN (:articleIds)) fresh " +
+            "WHERE c.article_id = fresh.article_id AND (c.counts <> fresh.counts OR c.total <> fresh.total)",
+            nativeQuery = true)
+    int recountLocked(@Param("articleIds") Collection<Long> articleIds);
+
+    /**
+     * Сверка счетчиков порции статей в отдельной короткой транзакции.
+     * Пересчет идет отдельным запросом после блокировки, поэтому видит все реакции,
+     * зафиксированные до нее; реакции, ждущие блокировки, применят свою дельту поверх пересчета.
+     *
+     * @return количество исправленных счетчиков
+     */
+    @Transactional
+    default int reconcile(Collection<Long> articleIds) {
+        ensureExistAll(articleIds);
+        lockAll(articleIds);
+        return recountLocked(articleIds);
+    }
+}
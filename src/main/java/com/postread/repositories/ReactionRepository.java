@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,9 +24,16 @@ public interface ReactionRepository extends JpaRepository<Reaction, Long> {
 
     boolean existsByUserAndArticle(User user, Article article);
 
+    @Query("SELECT r.type FROM Reaction r WHERE r.user.id = :userId AND r.article.id = :articleId")
+    Optional<Integer> findTypeByUserIdAndArticleId(@Param("userId") Long userId, @Param("articleId") Long articleId);
+
     void deleteByUserAndArticle(User user, Article article);
 
     int countByArticleIdAndType(Long articleId, Integer type);
 
     void deleteByArticleId(Long articleId);
+
+    // Реакции пользователя на набор статей: пары (id статьи, код реакции)
+    @Query("SELECT r.article.id, r.type FROM Reaction r WHERE r.user.id = :userId AND r.article.id IN :articleIds")
+    List<Object[]> findUserReactionTypes(@Param("userId") Long userId, @Param("articleIds") Collection<Long> articleIds);
 }
\ No newline at end of file
@@ -1,9 +1,16 @@
 package com.postread.repositories;
 
 import com.postread.data.Subscription;
+import com.postread.data.SubscriptionKey;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface SubscriptionRepository extends JpaRepository<Subscription, Long> {
+public interface SubscriptionRepository extends JpaRepository<Subscription, SubscriptionKey> {
+
+    // Количество авторов, на которых подписан пользователь
+    @Query("SELECT COUNT(s) FROM Subscription s WHERE s.id.subscriberId = :subscriberId")
+    long countFollowing(@Param("subscriberId") Long subscriberId);
 }
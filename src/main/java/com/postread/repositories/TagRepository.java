@@ -2,8 +2,6 @@ package com.postread.repositories;
 
 import com.postread.data.Tag;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -15,8 +13,5 @@ public interface TagRepository extends JpaRepository<Tag, Long> {
     Optional<Tag> findBySlug(String slug);
     List<Tag> findByNameContainingIgnoreCase(String name);
 
-    @Query("SELECT t FROM Tag t WHERE LOWER(t.name) LIKE LOWER(CONCAT('%', :query, '%'))")
-    List<Tag> searchTags(@Param("query") String query);
-
     List<Tag> findByNameIn(List<String> names);
 }
@@ -13,5 +13,7 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsUserByName(String username);
 
     boolean existsUserByEmail(String email);
+
+    boolean existsByIcon(String icon);
 //    Optional<User> findById(Long authorId);
 }
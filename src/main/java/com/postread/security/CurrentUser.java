@@ -0,0 +1,19 @@
+package com.postread.security;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Текущий аутентифицированный пользователь в параметре обработчика.
+ * Тип параметра - UserDetailsImpl (берется из principal, без запросов к БД)
+ * или User (загружается по id не более одного раза за запрос).
+ * Для анонимного запроса подставляется null.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+}
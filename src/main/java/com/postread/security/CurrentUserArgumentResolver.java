@@ -0,0 +1,71 @@
+package com.postread.security;
+
+import com.postread.repositories.UserRepository;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Подстановка параметров с аннотацией @CurrentUser.
+ * Principal уже загружен фильтром (TokenFilter через PrincipalCache или сессия формы входа),
+ * поэтому UserDetailsImpl отдается как есть, а сущность User читается по первичному ключу
+ * и запоминается в атрибутах запроса.
+ */
+@Component
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private static final String USER_ATTRIBUTE = CurrentUserArgumentResolver.class.getName() + ".USER";
+
+    private final UserRepository userRepository;
+
+    public CurrentUserArgumentResolver(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        Class<?> type = parameter.getParameterType();
+        return parameter.hasParameterAnnotation(CurrentUser.class)
+                && (type == User.class || type == UserDetailsImpl.class);
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+
+        Object principal = authentication.getPrincipal();
+        if (parameter.getParameterType() == UserDetailsImpl.class && principal instanceof UserDetailsImpl) {
+            return principal;
+        }
+
+        User user = (User) webRequest.getAttribute(USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (user == null) {
+            user = loadUser(principal, authentication.getName());
+            if (user == null) {
+                return null;
+            }
+            webRequest.setAttribute(USER_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+        }
+
+        return parameter.getParameterType() == User.class ? user : UserDetailsImpl.build(user);
+    }
+
+    private User loadUser(Object principal, String username) {
+        if (principal instanceof UserDetailsImpl details && details.getId() != null) {
+            return userRepository.findById(details.getId()).orElse(null);
+        }
+        return userRepository.findByName(username).orElse(null);
+    }
+}
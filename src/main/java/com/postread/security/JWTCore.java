@@ -17,14 +17,23 @@ public class JWTCore {
 
     String generateToken(Authentication auth) {
         UserDetailsImpl userDetails = (UserDetailsImpl) auth.getPrincipal();
+        return generateToken(userDetails.getUsername());
+    }
+
+    // Access-токен по имени пользователя (при обновлении по refresh-токену пароль не проверяется)
+    String generateToken(String username) {
         return Jwts.builder()
-                .setSubject(userDetails.getUsername())
+                .setSubject(username)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + lifetime))
                 .signWith(SignatureAlgorithm.HS256, secret)
                 .compact();
     }
 
+    public long getLifetimeSeconds() {
+        return lifetime / 1000L;
+    }
+
     public String getNameFromJwt(String jwt) {
         return Jwts.parser().setSigningKey(secret).parseClaimsJws(jwt).getBody().getSubject();
     }
@@ -0,0 +1,62 @@
+package com.postread.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Кэш пользователей, аутентифицированных по JWT: вместо запроса к users на каждый запрос.
+ * Записи живут ограниченное время и сбрасываются при изменении пользователя или его ролей
+ * (см. PrincipalCacheListener).
+ */
+@Component
+public class PrincipalCache {
+
+    private final Cache<String, UserDetailsImpl> cache;
+
+    public PrincipalCache(@Value("${app.cache.principals.max-size:10000}") long maxSize,
+                          @Value("${app.cache.principals.ttl-seconds:300}") long ttlSeconds,
+                          MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "principals");
+    }
+
+    public UserDetailsImpl get(String username, Function<String, UserDetailsImpl> loader) {
+        return cache.get(username, loader);
+    }
+
+    /**
+     * Сбросить пользователя сейчас и повторно после фиксации транзакции.
+     * Поиск по id, а не по имени: при смене имени в кэше осталась бы запись со старым.
+     */
+    public void invalidateUserAfterCommit(Long userId) {
+        invalidateUser(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateUser(userId);
+                }
+            });
+        }
+    }
+
+    private void invalidateUser(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        cache.asMap().values().removeIf(principal -> userId.equals(principal.getId()));
+    }
+}
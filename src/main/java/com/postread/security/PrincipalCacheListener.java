@@ -0,0 +1,31 @@
+package com.postread.security;
+
+import com.postread.data.UserRole;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Сброс PrincipalCache при изменении профиля, пароля или ролей пользователя
+ */
+@Component
+public class PrincipalCacheListener {
+
+    private final PrincipalCache principalCache;
+
+    public PrincipalCacheListener(PrincipalCache principalCache) {
+        this.principalCache = principalCache;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        if (entity instanceof User user) {
+            principalCache.invalidateUserAfterCommit(user.getId());
+        } else if (entity instanceof UserRole userRole && userRole.getUser() != null) {
+            principalCache.invalidateUserAfterCommit(userRole.getUser().getId());
+        }
+    }
+}
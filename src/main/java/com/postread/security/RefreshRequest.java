@@ -0,0 +1,8 @@
+package com.postread.security;
+
+import lombok.Data;
+
+@Data
+public class RefreshRequest {
+    private String refreshToken;
+}
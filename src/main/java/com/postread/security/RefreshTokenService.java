@@ -0,0 +1,162 @@
+package com.postread.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Долгоживущие refresh-токены: по ним выдаются новые access-токены без проверки пароля (BCrypt).
+ * В БД хранится только SHA-256 от токена - у случайного 256-битного значения
+ * медленное хэширование не нужно. Каждый токен одноразовый: при обновлении он отзывается
+ * и выдается следующий той же цепочки; повторное предъявление отозванного токена
+ * (признак кражи) отзывает всю цепочку.
+ */
+@Service
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO refresh_tokens (user_id, token_hash, family_id, expires_at) " +
+            "VALUES (?, ?, ?, now() + make_interval(days => ?))";
+
+    // Ротация одним запросом: отзывает предъявленный токен и сразу отдает владельца.
+    // Параллельный запрос с тем же токеном дождется блокировки строки и ничего не найдет.
+    private static final String CONSUME_SQL =
+            "WITH used AS (" +
+            "    UPDATE refresh_tokens SET revoked_at = now()" +
+            "    WHERE token_hash = ? AND revoked_at IS NULL AND expires_at > now()" +
+            "    RETURNING user_id, family_id" +
+            ") " +
+            "SELECT CAST(u.id AS BIGINT) AS user_id, u.name, used.family_id " +
+            "FROM used JOIN users u ON u.id = used.user_id";
+
+    private static final String REVOKE_FAMILY_SQL =
+            "UPDATE refresh_tokens SET revoked_at = now() " +
+            "WHERE family_id = (SELECT family_id FROM refresh_tokens WHERE token_hash = ?) " +
+            "AND revoked_at IS NULL";
+
+    private static final String PURGE_SQL =
+            "DELETE FROM refresh_tokens WHERE expires_at < now() - interval '1 day'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SecureRandom random = new SecureRandom();
+    private final int ttlDays;
+
+    // Локальный набор отозванных токенов: повторы отсекаются без обращения к БД
+    private final Cache<String, Boolean> revokedHashes;
+
+    public RefreshTokenService(JdbcTemplate jdbcTemplate,
+                               @Value("${app.auth.refresh-token-ttl-days:30}") int ttlDays,
+                               @Value("${app.auth.revoked-cache-size:100000}") long revokedCacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttlDays = ttlDays;
+        this.revokedHashes = Caffeine.newBuilder()
+                .maximumSize(revokedCacheSize)
+                .expireAfterWrite(Duration.ofDays(ttlDays))
+                .build();
+    }
+
+    /**
+     * Выдать первый токен новой цепочки (после входа по паролю)
+     */
+    @Transactional
+    public String issue(Long userId) {
+        return insert(userId, UUID.randomUUID());
+    }
+
+    /**
+     * Обменять refresh-токен на следующий.
+     * Пустой результат - токен неизвестен, истек или уже был использован.
+     */
+    @Transactional
+    public Optional<Rotation> rotate(String token) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        String hash = hash(token);
+        if (revokedHashes.getIfPresent(hash) != null) {
+            return Optional.empty();
+        }
+
+        List<ConsumedToken> consumed = jdbcTemplate.query(CONSUME_SQL,
+                (rs, rowNum) -> new ConsumedToken(rs.getLong("user_id"), rs.getString("name"),
+                        rs.getObject("family_id", UUID.class)),
+                hash);
+
+        if (consumed.isEmpty()) {
+            // Токен уже использован или отозван - отзываем и всех его потомков,
+            // дальнейшие повторы отсекаются локально
+            jdbcTemplate.update(REVOKE_FAMILY_SQL, hash);
+            revokedHashes.put(hash, Boolean.TRUE);
+            return Optional.empty();
+        }
+
+        ConsumedToken owner = consumed.get(0);
+        String next = insert(owner.userId(), owner.familyId());
+        return Optional.of(new Rotation(owner.userId(), owner.username(), next));
+    }
+
+    /**
+     * Отозвать цепочку, к которой относится токен (выход из системы)
+     */
+    @Transactional
+    public void revoke(String token) {
+        if (token == null || token.isBlank()) {
+            return;
+        }
+        String hash = hash(token);
+        jdbcTemplate.update(REVOKE_FAMILY_SQL, hash);
+        revokedHashes.put(hash, Boolean.TRUE);
+    }
+
+    @Scheduled(fixedDelayString = "${app.auth.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        int deleted = jdbcTemplate.update(PURGE_SQL);
+        if (deleted > 0) {
+            System.out.println("Удалено истекших refresh-токенов: " + deleted);
+        }
+    }
+
+    public long getTtlSeconds() {
+        return Duration.ofDays(ttlDays).toSeconds();
+    }
+
+    private String insert(Long userId, UUID familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        jdbcTemplate.update(INSERT_SQL, userId, hash(token), familyId, ttlDays);
+        return token;
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    public record Rotation(Long userId, String username, String refreshToken) {
+    }
+
+    private record ConsumedToken(Long userId, String username, UUID familyId) {
+    }
+}
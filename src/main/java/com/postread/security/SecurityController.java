@@ -6,10 +6,12 @@ import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.logout.SecurityContextLogoutHandler;
@@ -21,6 +23,7 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import com.postread.repositories.UserRepository;
 import com.postread.security.User;
 
+import java.util.Map;
 import java.util.Optional;
 
 @Controller
@@ -31,6 +34,7 @@ public class SecurityController {
     private PasswordEncoder passwordEncoder;
     private AuthenticationManager authenticationManager;
     private JWTCore jwtCore;
+    private RefreshTokenService refreshTokenService;
 
     @Autowired
     public void setUserRepository(UserRepository userRepository) {
@@ -52,6 +56,65 @@ public class SecurityController {
         this.jwtCore = jwtCore;
     }
 
+    @Autowired
+    public void setRefreshTokenService(RefreshTokenService refreshTokenService) {
+        this.refreshTokenService = refreshTokenService;
+    }
+
+    /**
+     * Вход для API-клиентов: единственная проверка пароля, дальше access-токен
+     * продлевается через /auth/refresh
+     */
+    @PostMapping("/token")
+    @ResponseBody
+    public ResponseEntity<?> issueToken(@RequestBody LoginRequest loginRequest) {
+        if (loginRequest.getUsername() == null || loginRequest.getUsername().trim().isEmpty() ||
+                loginRequest.getPassword() == null || loginRequest.getPassword().isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Имя пользователя и пароль обязательны"));
+        }
+
+        Authentication authentication;
+        try {
+            authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(loginRequest.getUsername().trim(), loginRequest.getPassword())
+            );
+        } catch (AuthenticationException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "Неверное имя пользователя или пароль"));
+        }
+
+        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+        String refreshToken = refreshTokenService.issue(userDetails.getId());
+        return ResponseEntity.ok(new TokenResponse(
+                jwtCore.generateToken(authentication), refreshToken, jwtCore.getLifetimeSeconds()));
+    }
+
+    /**
+     * Новый access-токен по refresh-токену, без проверки пароля.
+     * Refresh-токен одноразовый - в ответе приходит следующий.
+     */
+    @PostMapping("/refresh")
+    @ResponseBody
+    public ResponseEntity<?> refreshToken(@RequestBody RefreshRequest refreshRequest) {
+        Optional<RefreshTokenService.Rotation> rotation = refreshTokenService.rotate(refreshRequest.getRefreshToken());
+        if (rotation.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "Refresh-токен недействителен"));
+        }
+        return ResponseEntity.ok(new TokenResponse(
+                jwtCore.generateToken(rotation.get().username()),
+                rotation.get().refreshToken(),
+                jwtCore.getLifetimeSeconds()));
+    }
+
+    // Выход API-клиента: отзыв цепочки refresh-токенов
+    @PostMapping("/revoke")
+    @ResponseBody
+    public ResponseEntity<?> revokeToken(@RequestBody RefreshRequest refreshRequest) {
+        refreshTokenService.revoke(refreshRequest.getRefreshToken());
+        return ResponseEntity.noContent().build();
+    }
+
     @PostMapping("/login")
     public ModelAndView signin(@RequestParam("username") String username,
                                @RequestParam("password") String password,
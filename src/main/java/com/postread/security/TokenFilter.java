@@ -8,16 +8,39 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 
 @Component
 public class TokenFilter extends OncePerRequestFilter {
-    private JWTCore jwtCore;
-    private UserDetailsService userDetailsService;
+
+    // Статика и загруженные файлы не требуют аутентификации - фильтр их не трогает
+    private static final List<String> SKIPPED_PREFIXES = List.of(
+            "/css/", "/js/", "/images/", "/webjars/", "/static/", "/uploads/", "/favicon.ico");
+
+    private final JWTCore jwtCore;
+    private final UserService userService;
+    private final PrincipalCache principalCache;
+
+    public TokenFilter(JWTCore jwtCore, UserService userService, PrincipalCache principalCache) {
+        this.jwtCore = jwtCore;
+        this.userService = userService;
+        this.principalCache = principalCache;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String prefix : SKIPPED_PREFIXES) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -37,8 +60,10 @@ public class TokenFilter extends OncePerRequestFilter {
                 } catch (ExpiredJwtException e) {
                 }
                 if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    userDetails = userDetailsService.loadUserByUsername(username);
-                    auth = new UsernamePasswordAuthenticationToken(userDetails, null);
+                    // Пользователь берется из кэша, в БД - только при промахе
+                    userDetails = principalCache.get(username,
+                            name -> (UserDetailsImpl) userService.loadUserByUsername(name));
+                    auth = new UsernamePasswordAuthenticationToken(userDetails, null, List.of());
                     SecurityContextHolder.getContext().setAuthentication(auth);
                 }
             }
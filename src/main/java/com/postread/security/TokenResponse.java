@@ -0,0 +1,15 @@
+package com.postread.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TokenResponse {
+    private String accessToken;
+    private String refreshToken;
+    // Время жизни access-токена в секундах
+    private long expiresIn;
+}
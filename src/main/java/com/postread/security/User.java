@@ -1,5 +1,6 @@
 package com.postread.security;
 
+import com.postread.services.ArticleAuthorCacheListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -10,12 +11,14 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
+@EntityListeners({PrincipalCacheListener.class, ArticleAuthorCacheListener.class})
 @Table(name = "users")
 @AllArgsConstructor
 @NoArgsConstructor
 public class User {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_id_seq")
+    @SequenceGenerator(name = "users_id_seq", sequenceName = "users_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "name", nullable = false, length = 50)
@@ -0,0 +1,23 @@
+package com.postread.services;
+
+import com.postread.security.User;
+import jakarta.persistence.PostUpdate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Сброс закэшированных статей пользователя при изменении его профиля (имя, аватар)
+ */
+@Component
+public class ArticleAuthorCacheListener {
+
+    private final ArticleCache articleCache;
+
+    public ArticleAuthorCacheListener(ArticleCache articleCache) {
+        this.articleCache = articleCache;
+    }
+
+    @PostUpdate
+    public void onChange(User user) {
+        articleCache.evictAuthorAfterCommit(user.getId());
+    }
+}
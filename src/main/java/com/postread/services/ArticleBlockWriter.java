@@ -0,0 +1,118 @@
+package com.postread.services;
+
+import com.postread.data.ArticleBlock;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Сохранение блоков статьи по разнице с уже сохраненными:
+ * блоки сравниваются по хэшу содержимого и позиции, в БД уходят только
+ * изменения - пакетами INSERT, UPDATE и DELETE. Сохранение без правок не пишет ничего.
+ */
+@Component
+public class ArticleBlockWriter {
+
+    private static final String SELECT_SQL =
+            "SELECT id, block_order, content_hash FROM article_blocks WHERE article_id = ? ORDER BY block_order";
+    private static final String INSERT_SQL =
+            "INSERT INTO article_blocks (article_id, block_type, content, block_order, content_hash, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, now())";
+    private static final String UPDATE_SQL =
+            "UPDATE article_blocks SET block_type = ?, content = ?, content_hash = ?, block_order = ? WHERE id = ?";
+    private static final String UPDATE_ORDER_SQL =
+            "UPDATE article_blocks SET block_order = ? WHERE id = ?";
+    private static final String DELETE_SQL =
+            "DELETE FROM article_blocks WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ArticleBlockWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Привести блоки статьи к новому списку (порядок блоков - порядок в списке).
+     * Выполняется в текущей транзакции.
+     *
+     * @return true, если в БД что-то изменилось
+     */
+    public boolean sync(Long articleId, List<ArticleBlock> newBlocks) {
+        List<StoredBlock> stored = jdbcTemplate.query(SELECT_SQL,
+                (rs, rowNum) -> new StoredBlock(rs.getLong("id"), rs.getInt("block_order"), rs.getString("content_hash")),
+                articleId);
+
+        Map<String, Deque<StoredBlock>> storedByHash = new HashMap<>();
+        for (StoredBlock block : stored) {
+            storedByHash.computeIfAbsent(block.hash(), hash -> new ArrayDeque<>()).add(block);
+        }
+
+        List<Object[]> orderUpdates = new ArrayList<>();
+        List<Integer> unmatched = new ArrayList<>();
+        Set<Long> kept = new HashSet<>();
+
+        List<ArticleBlock> incoming = newBlocks != null ? newBlocks : List.of();
+        String[] hashes = new String[incoming.size()];
+
+        // 1. Блоки с тем же содержимым остаются на месте, при необходимости меняется только позиция
+        for (int i = 0; i < incoming.size(); i++) {
+            ArticleBlock block = incoming.get(i);
+            hashes[i] = ArticleBlock.contentHash(block.getType(), block.getContent());
+            Deque<StoredBlock> candidates = storedByHash.get(hashes[i]);
+            StoredBlock match = candidates != null ? candidates.pollFirst() : null;
+            if (match == null) {
+                unmatched.add(i);
+                continue;
+            }
+            kept.add(match.id());
+            if (match.order() != i) {
+                orderUpdates.add(new Object[]{i, match.id()});
+            }
+        }
+
+        // 2. Оставшиеся старые строки переиспользуются под измененные блоки, лишние удаляются
+        Deque<StoredBlock> leftovers = new ArrayDeque<>();
+        for (StoredBlock block : stored) {
+            if (!kept.contains(block.id())) {
+                leftovers.add(block);
+            }
+        }
+
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i : unmatched) {
+            ArticleBlock block = incoming.get(i);
+            StoredBlock reused = leftovers.pollFirst();
+            if (reused != null) {
+                updates.add(new Object[]{block.getType(), block.getContent(), hashes[i], i, reused.id()});
+            } else {
+                inserts.add(new Object[]{articleId, block.getType(), block.getContent(), i, hashes[i]});
+            }
+        }
+
+        List<Object[]> deletes = new ArrayList<>();
+        for (StoredBlock block : leftovers) {
+            deletes.add(new Object[]{block.id()});
+        }
+
+        // Уникальность (article_id, block_order) отложена до фиксации, порядок пакетов не важен
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_SQL, deletes);
+        }
+        if (!orderUpdates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_ORDER_SQL, orderUpdates);
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+        }
+
+        return !(deletes.isEmpty() && orderUpdates.isEmpty() && updates.isEmpty() && inserts.isEmpty());
+    }
+
+    private record StoredBlock(long id, int order, String hash) {
+    }
+}
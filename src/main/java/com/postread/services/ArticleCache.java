@@ -0,0 +1,96 @@
+package com.postread.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.postread.dto.ArticleBlockDTO;
+import com.postread.dto.ArticleDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Кэш полностью собранных ArticleDTO (статья + автор + теги + блоки + счетчики).
+ * В кэше хранятся просмотры из БД; несброшенные просмотры добавляются при чтении.
+ */
+@Component
+public class ArticleCache {
+
+    private final Cache<Long, ArticleDTO> cache;
+
+    public ArticleCache(@Value("${app.cache.articles.max-weight:50000000}") long maxWeight,
+                        @Value("${app.cache.articles.expire-after-write-minutes:10}") long expireMinutes,
+                        MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Long id, ArticleDTO dto) -> weigh(dto))
+                .expireAfterWrite(Duration.ofMinutes(expireMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "articles");
+    }
+
+    public ArticleDTO get(Long articleId, Function<Long, ArticleDTO> loader) {
+        return cache.get(articleId, loader);
+    }
+
+    /**
+     * Сбросить статью после записи ее просмотров в БД (ViewCountBuffer): следующее чтение
+     * загрузит свежий view_count. Закэшированные DTO не меняются - загрузка, начатая до
+     * записи, завершится до удаления записи и тоже будет удалена, поэтому в кэше не остается
+     * ни устаревшего, ни дважды учтенного значения.
+     */
+    public void invalidate(Long articleId) {
+        cache.invalidate(articleId);
+    }
+
+    /**
+     * Сбросить статьи из кэша сейчас и повторно после фиксации транзакции,
+     * чтобы параллельное чтение не вернуло в кэш незафиксированное состояние
+     */
+    public void evictAfterCommit(Long... articleIds) {
+        evict(articleIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(articleIds);
+                }
+            });
+        }
+    }
+
+    /**
+     * Сбросить после фиксации транзакции все статьи автора: в DTO хранятся его имя и аватар
+     */
+    public void evictAuthorAfterCommit(Long authorId) {
+        AfterCommit.run(() -> cache.asMap().values().removeIf(dto ->
+                dto.getAuthor() != null && authorId.equals(dto.getAuthor().getId())));
+    }
+
+    private void evict(Long... articleIds) {
+        for (Long articleId : articleIds) {
+            if (articleId != null) {
+                cache.invalidate(articleId);
+            }
+        }
+    }
+
+    // Вес записи - примерный объем текста статьи
+    private static int weigh(ArticleDTO dto) {
+        long weight = 256;
+        weight += dto.getTitle() != null ? dto.getTitle().length() : 0;
+        weight += dto.getShortDescription() != null ? dto.getShortDescription().length() : 0;
+        if (dto.getBlocks() != null) {
+            for (ArticleBlockDTO block : dto.getBlocks()) {
+                weight += 64 + (block.getContent() != null ? block.getContent().length() : 0);
+            }
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,100 @@
+package com.postread.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Удаление статей в два этапа: мягкое удаление всего дерева рецензий одним запросом
+ * в транзакции пользователя и фоновая очистка связанных данных небольшими порциями
+ */
+@Service
+public class ArticleDeletionService {
+
+    // Статья и все рецензии на нее (включая рецензии на рецензии) помечаются удаленными
+    private static final String SOFT_DELETE_SQL =
+            "WITH RECURSIVE tree AS (" +
+            "    SELECT id FROM articles WHERE id = ? AND deleted_at IS NULL" +
+            "    UNION" +
+            "    SELECT a.id FROM articles a JOIN tree t ON a.review_for_article_id = t.id" +
+            "    WHERE a.deleted_at IS NULL" +
+            ") " +
+            "UPDATE articles SET deleted_at = now(), is_published = false " +
+            "WHERE id IN (SELECT id FROM tree) " +
+            "RETURNING CAST(id AS BIGINT)";
+
+    private static final String PENDING_SQL =
+            "SELECT CAST(id AS BIGINT) FROM articles WHERE deleted_at IS NOT NULL ORDER BY deleted_at LIMIT ?";
+
+    // Загруженные файлы медиа-блоков статьи, на которые больше ничего не ссылается
+    // (блоки других статей, аватары пользователей)
+    private static final String MEDIA_FILES_SQL =
+            "SELECT DISTINCT b.content FROM article_blocks b " +
+            "WHERE b.article_id = ? AND b.block_type = 'media' AND b.content IS NOT NULL " +
+            "AND NOT EXISTS (SELECT 1 FROM article_blocks o " +
+            "    WHERE o.content = b.content AND o.block_type = 'media' AND o.article_id <> b.article_id) " +
+            "AND NOT EXISTS (SELECT 1 FROM users u WHERE u.icon = '/uploads/' || b.content)";
+
+    // Таблицы со ссылкой article_id, очищаются до удаления самой статьи
+    private static final List<String> DEPENDENT_TABLES = List.of(
+            "comments", "reactions", "bookmarks", "trending_engagements", "article_blocks", "articles_tags", "multimedia", "reviews");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ImageDerivativeService imageDerivativeService;
+    private final int batchSize;
+    private final int chunkSize;
+
+    public ArticleDeletionService(JdbcTemplate jdbcTemplate,
+                                  ImageDerivativeService imageDerivativeService,
+                                  @Value("${app.articles.purge-batch-size:20}") int batchSize,
+                                  @Value("${app.articles.purge-chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.imageDerivativeService = imageDerivativeService;
+        this.batchSize = batchSize;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Пометить статью и ее рецензии удаленными. Выполняется в текущей транзакции.
+     *
+     * @return id помеченных статей
+     */
+    public List<Long> softDelete(Long articleId) {
+        return jdbcTemplate.queryForList(SOFT_DELETE_SQL, Long.class, articleId);
+    }
+
+    /**
+     * Фоновая очистка помеченных статей. Каждая порция удаляется отдельным
+     * коротким запросом, чтобы не держать блокировки на тысячах строк.
+     */
+    @Scheduled(fixedDelayString = "${app.articles.purge-interval-ms:30000}")
+    public void purge() {
+        List<Long> pending = jdbcTemplate.queryForList(PENDING_SQL, Long.class, batchSize);
+        for (Long articleId : pending) {
+            try {
+                purgeArticle(articleId);
+            } catch (RuntimeException e) {
+                System.out.println("Ошибка очистки удаленной статьи " + articleId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void purgeArticle(Long articleId) {
+        List<String> mediaFiles = jdbcTemplate.queryForList(MEDIA_FILES_SQL, String.class, articleId);
+        for (String table : DEPENDENT_TABLES) {
+            String sql = "DELETE FROM " + table + " WHERE ctid = ANY(ARRAY(" +
+                    "SELECT ctid FROM " + table + " WHERE article_id = ? LIMIT ?))";
+            int deleted;
+            do {
+                deleted = jdbcTemplate.update(sql, articleId, chunkSize);
+            } while (deleted >= chunkSize);
+        }
+        // Счетчики реакций и ссылки рецензий снимаются каскадом (ON DELETE CASCADE / SET NULL)
+        jdbcTemplate.update("DELETE FROM articles WHERE id = ? AND deleted_at IS NOT NULL", articleId);
+        // Файлы и их уменьшенные копии не связаны со статьей по article_id - удаляются по имени исходника
+        imageDerivativeService.delete(mediaFiles);
+    }
+}
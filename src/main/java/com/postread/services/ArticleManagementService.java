@@ -11,8 +11,10 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -25,10 +27,13 @@ public class ArticleManagementService {
     private final UserRepository userRepository;
     private final TagService tagService;
     private final ArticleService articleService;
-    private final CommentRepository commentRepository;
-    private final ReactionRepository reactionRepository;
-    private final BookmarkRepository bookmarkRepository;
-    private final ArticleTagRepository articleTagRepository;
+    private final ArticleDeletionService articleDeletionService;
+    private final ArticleBlockWriter articleBlockWriter;
+    private final TagIndex tagIndex;
+    private final ArticleCache articleCache;
+    private final TrendingService trendingService;
+    private final TimelineService timelineService;
+    private final RelatedArticlesIndex relatedArticlesIndex;
 
     /**
      * Получение черновиков пользователя
@@ -91,43 +96,7 @@ public class ArticleManagementService {
             throw new RuntimeException("У вас нет прав для редактирования этой статьи");
         }
 
-        // Обновляем основные поля
-        article.setTitle(title);
-        article.setShortDescription(shortDescription);
-        article.setPublished(isPublished);
-
-        // УДАЛЯЕМ ВСЕ СУЩЕСТВУЮЩИЕ БЛОКИ ОТДЕЛЬНЫМ ЗАПРОСОМ
-        articleRepository.deleteArticleBlocksByArticleId(articleId);
-
-        // Принудительно синхронизируем с БД
-        articleRepository.flush();
-
-        // Теперь добавляем новые блоки в ОЧИЩЕННУЮ коллекцию
-        if (newBlocks != null && !newBlocks.isEmpty()) {
-            List<ArticleBlock> blocksToAdd = new ArrayList<>();
-            for (int i = 0; i < newBlocks.size(); i++) {
-                ArticleBlock block = new ArticleBlock();
-                block.setType(newBlocks.get(i).getType());
-                block.setContent(newBlocks.get(i).getContent());
-                block.setOrder(i);
-                block.setArticle(article);
-                blocksToAdd.add(block);
-            }
-            // Используем существующую коллекцию, не создаем новую
-            article.getBlocks().addAll(blocksToAdd);
-        }
-
-        // Обновляем теги
-        if (tagNames != null && !tagNames.isEmpty()) {
-            Set<Tag> tags = tagNames.stream()
-                    .map(tagService::findOrCreateTag)
-                    .collect(Collectors.toSet());
-            article.setTags(tags);
-        } else {
-            article.getTags().clear();
-        }
-
-        return articleRepository.save(article);
+        return applyUpdate(article, title, shortDescription, newBlocks, isPublished, tagNames, true);
     }
 
     /**
@@ -143,42 +112,72 @@ public class ArticleManagementService {
             throw new RuntimeException("У вас нет прав для редактирования этой статьи");
         }
 
-        // Шаг 1: Удаляем все блоки в отдельной операции
-        articleRepository.deleteArticleBlocksByArticleId(articleId);
-
-        // Шаг 2: Обновляем статью без блоков
         Article article = articleRepository.findById(articleId)
                 .orElseThrow(() -> new RuntimeException("Статья не найдена"));
 
+        return applyUpdate(article, title, shortDescription, newBlocks, isPublished, tagNames, false);
+    }
+
+    /**
+     * Общая часть обновления: блоки сохраняются по разнице с текущими (ArticleBlockWriter),
+     * поля и теги меняются только при отличии, поисковый вектор пересчитывается только при правке текста
+     */
+    private Article applyUpdate(Article article, String title, String shortDescription,
+                                List<ArticleBlock> newBlocks, boolean isPublished,
+                                Set<String> tagNames, boolean clearTagsIfEmpty) {
+        boolean textChanged = !Objects.equals(article.getTitle(), title)
+                || !Objects.equals(article.getShortDescription(), shortDescription);
+
+        boolean publicationChanged = article.isPublished() != isPublished;
+
         article.setTitle(title);
         article.setShortDescription(shortDescription);
         article.setPublished(isPublished);
 
-        // Шаг 3: Добавляем новые блоки как новые сущности
-        if (newBlocks != null && !newBlocks.isEmpty()) {
-            for (int i = 0; i < newBlocks.size(); i++) {
-                ArticleBlock newBlock = new ArticleBlock();
-                newBlock.setType(newBlocks.get(i).getType());
-                newBlock.setContent(newBlocks.get(i).getContent());
-                newBlock.setOrder(i);
-                newBlock.setArticle(article);
-                article.getBlocks().add(newBlock);
+        boolean blocksChanged = articleBlockWriter.sync(article.getId(), newBlocks);
+
+        // Обновляем теги (новая коллекция - только если набор тегов действительно изменился).
+        // Имена сравниваются в нормализованном виде, как их сохраняет TagService
+        Set<String> requestedNames = tagNames != null ? tagService.normalizeTagNames(tagNames) : Set.of();
+        boolean tagsChanged = false;
+        if (!requestedNames.isEmpty()) {
+            Set<String> currentNames = tagService.normalizeTagNames(article.getTags().stream()
+                    .map(Tag::getName)
+                    .collect(Collectors.toSet()));
+            if (!currentNames.equals(requestedNames)) {
+                article.setTags(tagService.findOrCreateTags(requestedNames));
+                tagsChanged = true;
             }
+        } else if (clearTagsIfEmpty && !article.getTags().isEmpty()) {
+            article.getTags().clear();
+            tagsChanged = true;
         }
 
-        // Обновляем теги
-        if (tagNames != null && !tagNames.isEmpty()) {
-            Set<Tag> tags = tagNames.stream()
-                    .map(tagService::findOrCreateTag)
-                    .collect(Collectors.toSet());
-            article.setTags(tags);
+        // Блоки пишутся через JDBC, а смена тегов затрагивает только articles_tags:
+        // сама строка статьи не меняется, и @PreUpdate не сработал бы
+        if (blocksChanged || tagsChanged) {
+            article.setUpdatedAt(LocalDateTime.now());
         }
 
-        return articleRepository.save(article);
+        Article saved = articleRepository.save(article);
+        articleRepository.flush();
+        if (textChanged || blocksChanged) {
+            articleRepository.updateSearchVector(saved.getId());
+        }
+        tagIndex.updateAfterCommit(saved);
+        if (publicationChanged) {
+            timelineService.syncAfterCommit(saved.getId());
+        }
+        if (publicationChanged || textChanged || blocksChanged || tagsChanged) {
+            relatedArticlesIndex.updateAfterCommit(saved, newBlocks != null ? newBlocks : List.of());
+        }
+        evictFromCache(saved);
+        return saved;
     }
 
     /**
-     * Удаление статьи со всеми связанными сущностями
+     * Удаление статьи вместе с рецензиями на нее.
+     * Статьи сразу скрываются, связанные данные удаляет фоновая очистка (ArticleDeletionService).
      */
     @Transactional
     public void deleteArticle(Long articleId, Long userId) {
@@ -186,40 +185,18 @@ public class ArticleManagementService {
             throw new RuntimeException("У вас нет прав для удаления этой статьи");
         }
 
-        // Удаляем все связанные сущности в правильном порядке
-        // 1. Комментарии
-        commentRepository.deleteByArticleId(articleId);
-
-        // 2. Реакции (лайки)
-        reactionRepository.deleteByArticleId(articleId);
-
-        // 3. Закладки
-        bookmarkRepository.deleteByArticleId(articleId);
-
-        // 4. Блоки статьи
-        articleRepository.deleteArticleBlocksByArticleId(articleId);
-
-        // 5. Связи с тегами
-        articleTagRepository.deleteByArticleId(articleId);
-
-        // 6. Рецензии (если эта статья является оригиналом для рецензий)
-        deleteArticleReviews(articleId);
+        Long reviewForArticleId = articleRepository.findReviewForArticleId(articleId).orElse(null);
+        List<Long> deletedIds = articleDeletionService.softDelete(articleId);
 
-        // 7. Саму статью
-        articleRepository.deleteById(articleId);
-    }
-
-    /**
-     * Удаление рецензий на статью
-     */
-    private void deleteArticleReviews(Long articleId) {
-        // Находим все рецензии на эту статью
-        List<Article> reviews = articleRepository.findByReviewForArticleId(articleId);
-
-        // Рекурсивно удаляем каждую рецензию со всеми её связями
-        for (Article review : reviews) {
-            deleteArticle(review.getId(), review.getAuthor().getId());
+        deletedIds.forEach(tagIndex::removeAfterCommit);
+        trendingService.removeAfterCommit(deletedIds);
+        timelineService.removeAfterCommit(deletedIds);
+        relatedArticlesIndex.removeAfterCommit(deletedIds);
+        List<Long> evicted = new ArrayList<>(deletedIds);
+        if (reviewForArticleId != null) {
+            evicted.add(reviewForArticleId);
         }
+        articleCache.evictAfterCommit(evicted.toArray(new Long[0]));
     }
 
     /**
@@ -229,7 +206,12 @@ public class ArticleManagementService {
     public Article publishArticle(Long articleId, Long userId) {
         Article article = getArticleForEditing(articleId, userId);
         article.setPublished(true);
-        return articleRepository.save(article);
+        Article saved = articleRepository.save(article);
+        tagIndex.updateAfterCommit(saved);
+        timelineService.syncAfterCommit(saved.getId());
+        relatedArticlesIndex.updateAfterCommit(saved, null);
+        evictFromCache(saved);
+        return saved;
     }
 
     /**
@@ -239,7 +221,22 @@ public class ArticleManagementService {
     public Article unpublishArticle(Long articleId, Long userId) {
         Article article = getArticleForEditing(articleId, userId);
         article.setPublished(false);
-        return articleRepository.save(article);
+        Article saved = articleRepository.save(article);
+        tagIndex.updateAfterCommit(saved);
+        timelineService.syncAfterCommit(saved.getId());
+        relatedArticlesIndex.removeAfterCommit(List.of(saved.getId()));
+        evictFromCache(saved);
+        return saved;
+    }
+
+    /**
+     * Сброс кэша статьи и, для рецензии, оригинала (у него меняется количество рецензий).
+     * Карточка статьи в рейтинге "в тренде" тоже перечитывается.
+     */
+    private void evictFromCache(Article article) {
+        Long reviewForArticleId = article.getReviewForArticle() != null ? article.getReviewForArticle().getId() : null;
+        articleCache.evictAfterCommit(article.getId(), reviewForArticleId);
+        trendingService.refreshAfterCommit(article.getId());
     }
 
     /**
@@ -0,0 +1,105 @@
+package com.postread.services;
+
+import com.postread.data.Article;
+import com.postread.dto.ArticleSearchPage;
+import com.postread.repositories.ArticleRepository;
+import lombok.RequiredArgsConstructor;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Поиск статей: полнотекстовый по tsvector (заголовок, описание, текстовые блоки)
+ * с ранжированием и постраничной выдачей
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class ArticleSearchService {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 50;
+
+    private final ArticleRepository articleRepository;
+    private final ArticleService articleService;
+    private final TagIndex tagIndex;
+
+    /**
+     * Поиск по тексту запроса и/или тегам
+     *
+     * @param query строка запроса (синтаксис websearch: слова, "фразы", -исключения, or)
+     * @param tags  теги статьи
+     * @param matchAllTags true - статья должна содержать все теги (AND), false - хотя бы один (OR)
+     */
+    public ArticleSearchPage search(String query, List<String> tags, boolean matchAllTags, int page, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int pageNumber = Math.max(0, page);
+        long offset = (long) pageNumber * pageSize;
+
+        String normalizedQuery = query != null ? query.trim() : "";
+        List<String> normalizedTags = normalizeTags(tags);
+
+        List<Article> articles;
+        long total;
+
+        if (!normalizedQuery.isEmpty()) {
+            List<Long> ids;
+            if (normalizedTags.isEmpty()) {
+                ids = articleRepository.fullTextSearchIds(normalizedQuery, pageSize, offset);
+                total = articleRepository.countFullTextSearch(normalizedQuery);
+            } else if (matchAllTags) {
+                ids = articleRepository.fullTextSearchIdsWithAllTags(normalizedQuery, normalizedTags,
+                        normalizedTags.size(), pageSize, offset);
+                total = articleRepository.countFullTextSearchWithAllTags(normalizedQuery, normalizedTags,
+                        normalizedTags.size());
+            } else {
+                ids = articleRepository.fullTextSearchIdsWithTags(normalizedQuery, normalizedTags, pageSize, offset);
+                total = articleRepository.countFullTextSearchWithTags(normalizedQuery, normalizedTags);
+            }
+            articles = loadInOrder(ids);
+        } else if (!normalizedTags.isEmpty()) {
+            // Только теги: id берем из in-memory индекса, статьи - одним запросом
+            RoaringBitmap matched = matchAllTags
+                    ? tagIndex.findAll(normalizedTags)
+                    : tagIndex.findAny(normalizedTags);
+            total = matched.getLongCardinality();
+            articles = loadInOrder(tagIndex.pageNewestFirst(matched, offset, pageSize));
+        } else {
+            articles = articleRepository.findPublishedPage(PageRequest.of(pageNumber, pageSize));
+            total = articleRepository.countByPublishedTrue();
+        }
+
+        return new ArticleSearchPage(articleService.createArticleDTOs(articles), total, pageNumber, pageSize);
+    }
+
+    // Загрузка статей одним запросом с сохранением порядка релевантности
+    private List<Article> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Article> byId = articleRepository.findAllByIdIn(ids).stream()
+                .collect(Collectors.toMap(Article::getId, Function.identity()));
+        return ids.stream()
+                .map(byId::get)
+                .filter(article -> article != null)
+                .collect(Collectors.toList());
+    }
+
+    private List<String> normalizeTags(List<String> tags) {
+        if (tags == null) {
+            return new ArrayList<>();
+        }
+        return tags.stream()
+                .filter(tag -> tag != null && !tag.trim().isEmpty())
+                .map(tag -> tag.trim().toLowerCase())
+                .distinct()
+                .collect(Collectors.toList());
+    }
+}
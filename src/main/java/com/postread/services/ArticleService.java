@@ -6,10 +6,17 @@ import com.postread.repositories.ArticleRepository;
 import com.postread.repositories.UserRepository;
 import com.postread.security.User;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -19,10 +26,20 @@ import java.util.stream.Collectors;
 @Transactional(readOnly = true)
 public class ArticleService {
 
+    // Размер страницы ленты по умолчанию и верхняя граница
+    public static final int DEFAULT_FEED_PAGE_SIZE = 20;
+    public static final int MAX_FEED_PAGE_SIZE = 50;
+
     private final ArticleRepository articleRepository;
     private final UserRepository userRepository;
     private final TagService tagService;
     private final CommentService commentService;
+    private final ViewCountBuffer viewCountBuffer;
+    private final TagIndex tagIndex;
+    private final ArticleCache articleCache;
+    private final TrendingService trendingService;
+    private final TimelineService timelineService;
+    private final RelatedArticlesIndex relatedArticlesIndex;
 
     @Transactional
     public Article createArticle(String title, String shortDescription,
@@ -54,13 +71,26 @@ public class ArticleService {
 
         // Обрабатываем теги
         if (tagNames != null && !tagNames.isEmpty()) {
-            Set<Tag> tags = tagNames.stream()
-                    .map(tagService::findOrCreateTag)
-                    .collect(Collectors.toSet());
-            article.setTags(tags);
+            article.setTags(tagService.findOrCreateTags(tagNames));
         }
 
-        return articleRepository.save(article);
+        Article saved = articleRepository.save(article);
+        // Блоки должны попасть в БД до пересчета поискового вектора
+        articleRepository.flush();
+        articleRepository.updateSearchVector(saved.getId());
+        tagIndex.updateAfterCommit(saved);
+        if (isPublished && reviewForArticleId == null) {
+            timelineService.syncAfterCommit(saved.getId());
+            relatedArticlesIndex.updateAfterCommit(saved, blocks);
+        }
+        if (reviewForArticleId != null) {
+            // У оригинала изменилось количество рецензий
+            articleCache.evictAfterCommit(reviewForArticleId);
+            if (isPublished) {
+                trendingService.recordReviewAfterCommit(reviewForArticleId);
+            }
+        }
+        return saved;
     }
 
     // Метод для получения рецензий на статью
@@ -124,20 +154,54 @@ public class ArticleService {
         }
     }
 
-    // Метод для увеличения счетчика просмотров
-    @Transactional
+    // Метод для увеличения счетчика просмотров (запись в БД выполняет ViewCountBuffer пакетно)
     public void incrementViewCount(Long articleId) {
-        articleRepository.incrementViewCount(articleId);
+        viewCountBuffer.increment(articleId);
+    }
+
+    // Просмотры с учетом еще не сброшенных в БД
+    public int getViewCount(Article article) {
+        return article.getViewCount() + (int) viewCountBuffer.getPending(article.getId());
     }
 
     // Создание DTO для статьи с безопасным доступом к данным
     public ArticleDTO createArticleDTO(Article article) {
+        int reviewsCount = getReviewsCount(article.getId());
+        Long commentsCount = commentService.getCommentsCountForArticle(article.getId());
+        return buildArticleDTO(article, true, reviewsCount, commentsCount);
+    }
+
+    // Пакетное создание DTO для списков: счетчики рецензий и комментариев
+    // загружаются одним сгруппированным запросом каждый, блоки не подгружаются
+    public List<ArticleDTO> createArticleDTOs(List<Article> articles) {
+        if (articles == null || articles.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Long> articleIds = articles.stream()
+                .map(Article::getId)
+                .collect(Collectors.toList());
+
+        Map<Long, Long> reviewsCounts = new HashMap<>();
+        for (Object[] row : articleRepository.countReviewsByArticleIds(articleIds)) {
+            reviewsCounts.put((Long) row[0], (Long) row[1]);
+        }
+        Map<Long, Long> commentsCounts = commentService.getCommentsCountForArticles(articleIds);
+
+        return articles.stream()
+                .map(article -> buildArticleDTO(article, false,
+                        reviewsCounts.getOrDefault(article.getId(), 0L).intValue(),
+                        commentsCounts.getOrDefault(article.getId(), 0L)))
+                .collect(Collectors.toList());
+    }
+
+    private ArticleDTO buildArticleDTO(Article article, boolean withBlocks, int reviewsCount, Long commentsCount) {
         ArticleDTO dto = new ArticleDTO();
         dto.setId(article.getId());
         dto.setTitle(article.getTitle());
         dto.setShortDescription(article.getShortDescription());
         dto.setPublished(article.isPublished());
-        dto.setViewCount(article.getViewCount());
+        dto.setViewCount(getViewCount(article));
         dto.setCreatedAt(article.getCreatedAt());
         dto.setUpdatedAt(article.getUpdatedAt());
         dto.setReview(article.isReview());
@@ -152,7 +216,7 @@ public class ArticleService {
         }
 
         // Безопасная установка блоков
-        if (article.getBlocks() != null && !article.getBlocks().isEmpty()) {
+        if (withBlocks && article.getBlocks() != null && !article.getBlocks().isEmpty()) {
             List<ArticleBlockDTO> blockDTOs = article.getBlocks().stream()
                     .map(this::convertToBlockDTO)
                     .collect(Collectors.toList());
@@ -189,17 +253,150 @@ public class ArticleService {
             dto.setReviewForArticle(originalDTO);
         }
 
-        // Безопасное получение количества рецензий
-        dto.setReviewsCount(getReviewsCount(article.getId()));
-        dto.setHasReviews(hasReviews(article.getId()));
+        dto.setReviewsCount(reviewsCount);
+        dto.setHasReviews(reviewsCount > 0);
 
-        Long commentsCount = commentService.getCommentsCountForArticle(article.getId());
         dto.setCommentsCount(commentsCount);
         dto.setHasComments(commentsCount > 0);
 
         return dto;
     }
 
+    // Лента оригинальных статей с keyset-пагинацией по (createdAt, id)
+    public ArticleFeedPage getArticlesFeed(String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_FEED_PAGE_SIZE));
+        // Запрашиваем на одну запись больше, чтобы понять, есть ли следующая страница
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+
+        List<Article> articles;
+        if (cursor == null || cursor.isBlank()) {
+            articles = articleRepository.findOriginalArticlesFeed(limit);
+        } else {
+            FeedCursor position = decodeFeedCursor(cursor);
+            articles = articleRepository.findOriginalArticlesFeedAfter(position.createdAt(), position.id(), limit);
+        }
+
+        boolean hasMore = articles.size() > pageSize;
+        if (hasMore) {
+            articles = articles.subList(0, pageSize);
+        }
+
+        List<ArticleSimpleDTO> items = articles.stream()
+                .map(this::convertToSimpleDTO)
+                .collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (hasMore) {
+            Article last = articles.get(articles.size() - 1);
+            nextCursor = encodeFeedCursor(last.getCreatedAt(), last.getId());
+        }
+
+        return new ArticleFeedPage(items, nextCursor, hasMore);
+    }
+
+    // Лента подписок: позиции - одним keyset-запросом к home_timeline, карточки - одним запросом по id
+    public ArticleFeedPage getHomeFeed(Long userId, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_FEED_PAGE_SIZE));
+
+        FeedCursor position = cursor == null || cursor.isBlank() ? null : decodeFeedCursor(cursor);
+        List<TimelineService.Entry> entries = timelineService.findPage(userId,
+                position != null ? position.createdAt() : null,
+                position != null ? position.id() : null,
+                pageSize + 1);
+
+        boolean hasMore = entries.size() > pageSize;
+        if (hasMore) {
+            entries = entries.subList(0, pageSize);
+        }
+
+        Map<Long, Article> articles = new HashMap<>();
+        if (!entries.isEmpty()) {
+            List<Long> ids = entries.stream().map(TimelineService.Entry::articleId).collect(Collectors.toList());
+            for (Article article : articleRepository.findPublishedOriginalsByIds(ids)) {
+                articles.put(article.getId(), article);
+            }
+        }
+
+        // Статья могла быть снята с публикации после раздачи - такие пропускаем
+        List<ArticleSimpleDTO> items = new ArrayList<>();
+        for (TimelineService.Entry entry : entries) {
+            Article article = articles.get(entry.articleId());
+            if (article != null) {
+                items.add(convertToSimpleDTO(article));
+            }
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            TimelineService.Entry last = entries.get(entries.size() - 1);
+            nextCursor = encodeFeedCursor(last.createdAt(), last.articleId());
+        }
+
+        return new ArticleFeedPage(items, nextCursor, hasMore);
+    }
+
+    // Похожие статьи: id из RelatedArticlesIndex, карточки - одним запросом
+    public List<ArticleSimpleDTO> getRelatedArticles(Long articleId, int limit) {
+        List<Long> ids = relatedArticlesIndex.findSimilar(articleId, limit);
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Article> articles = new HashMap<>();
+        for (Article article : articleRepository.findPublishedOriginalsByIds(ids)) {
+            articles.put(article.getId(), article);
+        }
+        List<ArticleSimpleDTO> related = new ArrayList<>();
+        for (Long id : ids) {
+            Article article = articles.get(id);
+            if (article != null) {
+                related.add(convertToSimpleDTO(article));
+            }
+        }
+        return related;
+    }
+
+    private record FeedCursor(LocalDateTime createdAt, Long id) {
+    }
+
+    private String encodeFeedCursor(LocalDateTime createdAt, Long id) {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private FeedCursor decodeFeedCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new FeedCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Некорректный курсор ленты");
+        }
+    }
+
+    // Конвертер в упрощенный DTO для списков
+    private ArticleSimpleDTO convertToSimpleDTO(Article article) {
+        ArticleSimpleDTO dto = new ArticleSimpleDTO();
+        dto.setId(article.getId());
+        dto.setTitle(article.getTitle());
+        dto.setShortDescription(article.getShortDescription());
+        dto.setPublished(article.isPublished());
+        dto.setViewCount(getViewCount(article));
+        dto.setCreatedAt(article.getCreatedAt());
+
+        if (article.getAuthor() != null) {
+            UserSimpleDTO authorDTO = new UserSimpleDTO();
+            authorDTO.setId(article.getAuthor().getId());
+            authorDTO.setName(article.getAuthor().getName());
+            authorDTO.setIcon(article.getAuthor().getIcon());
+            dto.setAuthor(authorDTO);
+        }
+
+        return dto;
+    }
+
     // Конвертер для блоков
     private ArticleBlockDTO convertToBlockDTO(ArticleBlock block) {
         ArticleBlockDTO dto = new ArticleBlockDTO();
@@ -225,11 +422,8 @@ public class ArticleService {
             // Сначала увеличиваем счетчик просмотров
             incrementViewCount(id);
 
-            // Затем загружаем статью
-            Article article = getArticleWithFullInfo(id);
-            ArticleDTO dto = createArticleDTO(article);
-
-            return dto;
+            // Затем берем статью из кэша (или загружаем)
+            return getCachedArticleDTO(id);
         } catch (Exception e) {
             System.err.println("Ошибка при получении статьи ID " + id + ": " + e.getMessage());
             throw e;
@@ -238,8 +432,44 @@ public class ArticleService {
 
     // Получение DTO без увеличения счетчика просмотров (для внутреннего использования)
     public ArticleDTO getArticleDTOWithoutIncrement(Long id) {
+        return getCachedArticleDTO(id);
+    }
+
+    // DTO из кэша; возвращается копия с просмотрами с учетом еще не сброшенных в БД
+    private ArticleDTO getCachedArticleDTO(Long id) {
+        ArticleDTO cached = articleCache.get(id, this::loadArticleDTO);
+        ArticleDTO dto = copyArticleDTO(cached);
+        dto.setViewCount(cached.getViewCount() + (int) viewCountBuffer.getPending(id));
+        return dto;
+    }
+
+    // Загрузка DTO для кэша: просмотры - только сохраненные в БД
+    private ArticleDTO loadArticleDTO(Long id) {
         Article article = getArticleWithFullInfo(id);
-        return createArticleDTO(article);
+        ArticleDTO dto = createArticleDTO(article);
+        dto.setViewCount(article.getViewCount());
+        return dto;
+    }
+
+    private ArticleDTO copyArticleDTO(ArticleDTO source) {
+        ArticleDTO dto = new ArticleDTO();
+        dto.setId(source.getId());
+        dto.setTitle(source.getTitle());
+        dto.setShortDescription(source.getShortDescription());
+        dto.setAuthor(source.getAuthor());
+        dto.setPublished(source.isPublished());
+        dto.setCreatedAt(source.getCreatedAt());
+        dto.setUpdatedAt(source.getUpdatedAt());
+        dto.setViewCount(source.getViewCount());
+        dto.setBlocks(source.getBlocks());
+        dto.setTags(source.getTags());
+        dto.setReview(source.isReview());
+        dto.setReviewForArticle(source.getReviewForArticle());
+        dto.setReviewsCount(source.getReviewsCount());
+        dto.setHasReviews(source.isHasReviews());
+        dto.setCommentsCount(source.getCommentsCount());
+        dto.setHasComments(source.isHasComments());
+        return dto;
     }
 
     // Получение статьи по ID
@@ -248,24 +478,8 @@ public class ArticleService {
                 .orElseThrow(() -> new RuntimeException("Статья не найдена"));
     }
 
-    // Методы поиска
-    public List<Article> searchArticlesByTitle(String title) {
-        return articleRepository.findByTitleContainingIgnoreCaseAndPublishedTrue(title);
-    }
-
+    // Поиск по тегам (полнотекстовый поиск - в ArticleSearchService)
     public List<Article> searchArticlesByTags(List<String> tagNames) {
         return articleRepository.findByTagsNameInAndPublishedTrue(tagNames);
     }
-
-    public List<Article> searchArticlesByTitleAndTags(String title, List<String> tags) {
-        if (title != null && !title.trim().isEmpty() && tags != null && !tags.isEmpty()) {
-            return articleRepository.findByTitleContainingIgnoreCaseAndTagsNameInAndPublishedTrue(title, tags);
-        } else if (title != null && !title.trim().isEmpty()) {
-            return searchArticlesByTitle(title);
-        } else if (tags != null && !tags.isEmpty()) {
-            return searchArticlesByTags(tags);
-        } else {
-            return articleRepository.findAllByPublishedTrueOrderByCreatedAtDesc();
-        }
-    }
 }
\ No newline at end of file
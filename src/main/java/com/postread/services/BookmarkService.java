@@ -1,18 +1,17 @@
 package com.postread.services;
 
 import com.postread.data.Bookmark;
-import com.postread.data.Article;
 import com.postread.security.User;
 import com.postread.repositories.BookmarkRepository;
-import com.postread.repositories.ArticleRepository;
 import com.postread.repositories.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Optional;
 
 import java.util.List;
 
@@ -21,80 +20,64 @@ import java.util.List;
 @Transactional(readOnly = true)
 public class BookmarkService {
 
+    // Записи закладок - одним запросом по id, без загрузки пользователя и статьи.
+    // Уникальный индекс (user_id, article_id) делает повторы и параллельные клики безопасными.
+    private static final String INSERT_SQL =
+            "INSERT INTO bookmarks (user_id, article_id) " +
+            "SELECT :userId, :articleId FROM articles WHERE id = :articleId AND deleted_at IS NULL " +
+            "ON CONFLICT (user_id, article_id) DO NOTHING RETURNING CAST(id AS BIGINT)";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM bookmarks WHERE user_id = :userId AND article_id = :articleId RETURNING CAST(id AS BIGINT)";
+
+    // Удаляем существующую закладку, иначе добавляем. Если вставка уперлась в конфликт
+    // (параллельный запрос успел добавить), закладка есть - отвечаем true
+    private static final String TOGGLE_SQL =
+            "WITH removed AS (" +
+            "    DELETE FROM bookmarks WHERE user_id = :userId AND article_id = :articleId RETURNING id" +
+            "), added AS (" +
+            "    INSERT INTO bookmarks (user_id, article_id)" +
+            "    SELECT :userId, :articleId FROM articles" +
+            "    WHERE id = :articleId AND deleted_at IS NULL AND NOT EXISTS (SELECT 1 FROM removed)" +
+            "    ON CONFLICT (user_id, article_id) DO NOTHING" +
+            "    RETURNING id" +
+            ") " +
+            "SELECT CASE" +
+            "    WHEN EXISTS (SELECT 1 FROM removed) THEN false" +
+            "    WHEN EXISTS (SELECT 1 FROM added) THEN true" +
+            "    ELSE EXISTS (SELECT 1 FROM articles WHERE id = :articleId AND deleted_at IS NULL)" +
+            " END";
+
     private final BookmarkRepository bookmarkRepository;
-    private final ArticleRepository articleRepository;
     private final UserRepository userRepository;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TrendingService trendingService;
 
-    // Добавить статью в избранное
+    // Добавить статью в избранное (повторное добавление ничего не меняет)
     @Transactional
     public boolean addBookmark(Long userId, Long articleId) {
-        try {
-            System.out.println("➕ BookmarkService: Adding bookmark - User ID: " + userId + ", Article ID: " + articleId);
-
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
-            Article article = articleRepository.findById(articleId)
-                    .orElseThrow(() -> new RuntimeException("Статья не найдена"));
-
-            // Проверяем, не добавлена ли уже статья в избранное
-            if (bookmarkRepository.existsByUserAndArticle(user.getId(), article.getId())) {
-                System.out.println("ℹ️ BookmarkService: Bookmark already exists");
-                return false;
-            }
-
-            Bookmark bookmark = new Bookmark();
-            bookmark.setUser(user);
-            bookmark.setArticle(article);
-
-            bookmarkRepository.save(bookmark);
-            System.out.println("✅ BookmarkService: Bookmark added successfully");
-            return true;
-        } catch (Exception e) {
-            System.err.println("❌ BookmarkService: Error adding bookmark: " + e.getMessage());
-            throw new RuntimeException("Ошибка при добавлении в избранное: " + e.getMessage());
+        System.out.println("➕ BookmarkService: Adding bookmark - User ID: " + userId + ", Article ID: " + articleId);
+        boolean added = !jdbcTemplate.queryForList(INSERT_SQL, params(userId, articleId), Long.class).isEmpty();
+        System.out.println("✅ BookmarkService: Bookmark added: " + added);
+        if (added) {
+            trendingService.recordBookmarkAfterCommit(userId, articleId);
         }
+        return added;
     }
 
     // Удалить статью из избранного
     @Transactional
     public boolean removeBookmark(Long userId, Long articleId) {
-        try {
-            System.out.println("➖ BookmarkService: Removing bookmark - User ID: " + userId + ", Article ID: " + articleId);
-
-            Optional<Bookmark> bookmark = bookmarkRepository.findByUserAndArticle(
-                    userRepository.findById(userId).orElse(null),
-                    articleRepository.findById(articleId).orElse(null)
-            );
-
-            if (bookmark.isPresent()) {
-                bookmarkRepository.delete(bookmark.get());
-                System.out.println("✅ BookmarkService: Bookmark removed successfully");
-                return true;
-            }
-            System.out.println("ℹ️ BookmarkService: Bookmark not found");
-            return false;
-        } catch (Exception e) {
-            System.err.println("❌ BookmarkService: Error removing bookmark: " + e.getMessage());
-            throw new RuntimeException("Ошибка при удалении из избранного: " + e.getMessage());
-        }
+        System.out.println("➖ BookmarkService: Removing bookmark - User ID: " + userId + ", Article ID: " + articleId);
+        boolean removed = !jdbcTemplate.queryForList(DELETE_SQL, params(userId, articleId), Long.class).isEmpty();
+        System.out.println("✅ BookmarkService: Bookmark removed: " + removed);
+        return removed;
     }
 
     // Проверить, добавлена ли статья в избранное (без выбрасывания исключений)
     public boolean isArticleBookmarked(Long userId, Long articleId) {
         try {
-            System.out.println("🔍 BookmarkService: Checking bookmark status - User ID: " + userId + ", Article ID: " + articleId);
-
-            User user = userRepository.findById(userId).orElse(null);
-            Article article = articleRepository.findById(articleId).orElse(null);
-
-            if (user == null || article == null) {
-                System.out.println("⚠️ BookmarkService: User or article not found");
-                return false;
-            }
-
-            boolean exists = bookmarkRepository.existsByUserAndArticle(user.getId(), article.getId());
-            System.out.println("✅ BookmarkService: Bookmark exists: " + exists);
-            return exists;
+            return bookmarkRepository.existsByUserAndArticle(userId, articleId);
         } catch (Exception e) {
             System.err.println("❌ BookmarkService: Error checking bookmark status: " + e.getMessage());
             return false;
@@ -125,45 +108,21 @@ public class BookmarkService {
         return count;
     }
 
+    // Переключить закладку одним запросом; возвращает состояние после переключения
     @Transactional
     public boolean toggleBookmark(Long userId, Long articleId) {
         System.out.println("🔄 BookmarkService: Toggling bookmark - User ID: " + userId + ", Article ID: " + articleId);
-
-        try {
-            // Детальная проверка пользователя и статьи
-            User user = userRepository.findById(userId).orElse(null);
-            Article article = articleRepository.findById(articleId).orElse(null);
-
-            System.out.println("👤 User found: " + (user != null ? user.getName() : "NULL"));
-            System.out.println("📄 Article found: " + (article != null ? article.getTitle() : "NULL"));
-
-            if (user == null || article == null) {
-                System.out.println("❌ User or Article not found - cannot toggle bookmark");
-                return false;
-            }
-
-            boolean currentlyBookmarked = bookmarkRepository.existsByUserAndArticle(user.getId(), article.getId());
-            System.out.println("📊 Current bookmark status: " + currentlyBookmarked);
-
-            if (currentlyBookmarked) {
-                System.out.println("➖ Removing existing bookmark...");
-                bookmarkRepository.deleteByUserAndArticle(user.getId(), article.getId());
-                System.out.println("✅ Bookmark removed");
-                return false;
-            } else {
-                System.out.println("➕ Creating new bookmark...");
-                Bookmark bookmark = new Bookmark();
-                bookmark.setUser(user);
-                bookmark.setArticle(article);
-
-                Bookmark savedBookmark = bookmarkRepository.save(bookmark);
-                System.out.println("✅ Bookmark created with ID: " + savedBookmark.getId());
-                return true;
-            }
-        } catch (Exception e) {
-            System.err.println("❌ ERROR in toggleBookmark: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+        Boolean bookmarked = jdbcTemplate.queryForObject(TOGGLE_SQL, params(userId, articleId), Boolean.class);
+        System.out.println("✅ BookmarkService: Bookmarked: " + bookmarked);
+        if (Boolean.TRUE.equals(bookmarked)) {
+            trendingService.recordBookmarkAfterCommit(userId, articleId);
         }
+        return Boolean.TRUE.equals(bookmarked);
+    }
+
+    private MapSqlParameterSource params(Long userId, Long articleId) {
+        return new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("articleId", articleId);
     }
 }
\ No newline at end of file
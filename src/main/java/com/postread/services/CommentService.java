@@ -4,15 +4,22 @@ import com.postread.data.Comment;
 import com.postread.data.Article;
 import com.postread.security.User;
 import com.postread.dto.CommentDTO;
+import com.postread.dto.CommentPage;
+import com.postread.dto.CommentRepliesPage;
+import com.postread.dto.CommentThreadDTO;
 import com.postread.dto.UserSimpleDTO;
 import com.postread.repositories.CommentRepository;
 import com.postread.repositories.ArticleRepository;
 import com.postread.repositories.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
@@ -20,16 +27,102 @@ import java.util.stream.Collectors;
 @Transactional(readOnly = true)
 public class CommentService {
 
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 50;
+    public static final int DEFAULT_REPLIES_PER_THREAD = 3;
+    public static final int MAX_REPLIES_PER_THREAD = 20;
+
+    private static final Pattern PATH_PATTERN = Pattern.compile("\\d{10}(\\.\\d{10})*");
+
     private final CommentRepository commentRepository;
     private final ArticleRepository articleRepository;
     private final UserRepository userRepository;
+    private final ArticleCache articleCache;
+    private final TrendingService trendingService;
+
+    /**
+     * Страница веток комментариев статьи: корневые комментарии по курсору (новые сверху)
+     * и первые ответы каждой ветки. Два запроса независимо от числа комментариев.
+     */
+    public CommentPage getCommentThreads(Long articleId, String cursor, int size, int repliesPerThread) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int repliesLimit = Math.max(0, Math.min(repliesPerThread, MAX_REPLIES_PER_THREAD));
+
+        // Берем на одну запись больше, чтобы понять, есть ли следующая страница
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+        List<Comment> roots;
+        if (cursor == null || cursor.isBlank()) {
+            roots = commentRepository.findRootPage(articleId, limit);
+        } else {
+            RootCursor position = decodeRootCursor(cursor);
+            roots = commentRepository.findRootPageAfter(articleId, position.createdAt(), position.id(), limit);
+        }
+
+        boolean hasMore = roots.size() > pageSize;
+        if (hasMore) {
+            roots = roots.subList(0, pageSize);
+        }
 
-    // Получить все комментарии для статьи
-    public List<CommentDTO> getCommentsForArticle(Long articleId) {
-        List<Comment> comments = commentRepository.findByArticleIdOrderByCreatedAtDesc(articleId);
-        return comments.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        Map<Long, List<ReplyRow>> repliesByRoot = new HashMap<>();
+        if (repliesLimit > 0 && !roots.isEmpty()) {
+            List<Long> rootIds = roots.stream().map(Comment::getId).collect(Collectors.toList());
+            for (Object[] row : commentRepository.findFirstRepliesOfThreads(rootIds, repliesLimit)) {
+                ReplyRow reply = new ReplyRow(convertToDTO(row), (String) row[7]);
+                repliesByRoot.computeIfAbsent(reply.dto().getRootId(), id -> new ArrayList<>()).add(reply);
+            }
+        }
+
+        List<CommentThreadDTO> threads = new ArrayList<>(roots.size());
+        for (Comment root : roots) {
+            List<ReplyRow> replies = repliesByRoot.getOrDefault(root.getId(), List.of());
+            boolean hasMoreReplies = root.getReplyCount() > replies.size();
+            String repliesCursor = null;
+            if (hasMoreReplies) {
+                repliesCursor = replies.isEmpty() ? root.getPath() : replies.get(replies.size() - 1).path();
+            }
+            threads.add(new CommentThreadDTO(
+                    convertToDTO(root),
+                    replies.stream().map(ReplyRow::dto).collect(Collectors.toList()),
+                    root.getReplyCount(),
+                    repliesCursor,
+                    hasMoreReplies));
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            Comment last = roots.get(roots.size() - 1);
+            nextCursor = encodeRootCursor(last.getCreatedAt(), last.getId());
+        }
+        return new CommentPage(threads, nextCursor, hasMore);
+    }
+
+    /**
+     * Следующая порция ответов ветки в порядке обхода дерева.
+     * Курсор - путь последнего загруженного ответа (пустой - с начала ветки).
+     */
+    public CommentRepliesPage getThreadReplies(Long rootId, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        String rootPath = pathSegment(rootId);
+
+        String afterPath = rootPath;
+        if (cursor != null && !cursor.isBlank()) {
+            if (!PATH_PATTERN.matcher(cursor).matches() || !cursor.startsWith(rootPath)) {
+                throw new IllegalArgumentException("Некорректный курсор ответов");
+            }
+            afterPath = cursor;
+        }
+
+        List<Comment> replies = commentRepository.findThreadRepliesAfter(rootId, afterPath, PageRequest.of(0, pageSize + 1));
+        boolean hasMore = replies.size() > pageSize;
+        if (hasMore) {
+            replies = replies.subList(0, pageSize);
+        }
+
+        String nextCursor = hasMore ? replies.get(replies.size() - 1).getPath() : null;
+        return new CommentRepliesPage(
+                replies.stream().map(this::convertToDTO).collect(Collectors.toList()),
+                nextCursor,
+                hasMore);
     }
 
     // Получить количество комментариев для статьи
@@ -37,6 +130,18 @@ public class CommentService {
         return commentRepository.countByArticleId(articleId);
     }
 
+    // Получить количество комментариев для нескольких статей одним запросом
+    public Map<Long, Long> getCommentsCountForArticles(Collection<Long> articleIds) {
+        Map<Long, Long> counts = new HashMap<>();
+        if (articleIds == null || articleIds.isEmpty()) {
+            return counts;
+        }
+        for (Object[] row : commentRepository.countByArticleIds(articleIds)) {
+            counts.put((Long) row[0], (Long) row[1]);
+        }
+        return counts;
+    }
+
     // Создать новый комментарий
     @Transactional
     public CommentDTO createComment(String content, Long articleId, Long userId, Long parentCommentId) {
@@ -52,13 +157,31 @@ public class CommentService {
         comment.setUser(user);
 
         // Если это ответ на другой комментарий
+        Comment parentComment = null;
         if (parentCommentId != null) {
-            Comment parentComment = commentRepository.findById(parentCommentId)
+            parentComment = commentRepository.findById(parentCommentId)
                     .orElseThrow(() -> new RuntimeException("Родительский комментарий не найден"));
+            if (!parentComment.getArticle().getId().equals(articleId)) {
+                throw new RuntimeException("Родительский комментарий не найден");
+            }
             comment.setParentComment(parentComment);
         }
 
         Comment savedComment = commentRepository.save(comment);
+
+        // Путь строится от id: он уже выдан последовательностью, INSERT уйдет сразу с путем
+        String segment = pathSegment(savedComment.getId());
+        if (parentComment == null) {
+            savedComment.setRootId(savedComment.getId());
+            savedComment.setPath(segment);
+        } else {
+            savedComment.setParentCommentId(parentComment.getId());
+            savedComment.setRootId(parentComment.getRootId());
+            savedComment.setPath(parentComment.getPath() + "." + segment);
+            commentRepository.adjustReplyCount(parentComment.getRootId(), 1);
+        }
+        articleCache.evictAfterCommit(articleId);
+        trendingService.recordCommentAfterCommit(articleId);
         return convertToDTO(savedComment);
     }
 
@@ -73,7 +196,14 @@ public class CommentService {
             throw new RuntimeException("Вы можете удалять только свои комментарии");
         }
 
+        // Ответы удаляются каскадно в БД, счетчик ветки уменьшаем на все поддерево
+        if (comment.getParentCommentId() != null) {
+            long removed = commentRepository.countSubtree(comment.getRootId(), comment.getPath());
+            commentRepository.adjustReplyCount(comment.getRootId(), -removed);
+        }
+
         commentRepository.delete(comment);
+        articleCache.evictAfterCommit(comment.getArticle().getId());
     }
 
     // Конвертировать сущность в DTO
@@ -85,9 +215,9 @@ public class CommentService {
         dto.setUpdatedAt(comment.getUpdatedAt());
         dto.setArticleId(comment.getArticle().getId());
 
-        if (comment.getParentComment() != null) {
-            dto.setParentCommentId(comment.getParentComment().getId());
-        }
+        dto.setParentCommentId(comment.getParentCommentId());
+        dto.setRootId(comment.getRootId());
+        dto.setDepth(depthOf(comment.getPath()));
 
         // Информация об авторе
         UserSimpleDTO authorDTO = new UserSimpleDTO();
@@ -98,4 +228,69 @@ public class CommentService {
 
         return dto;
     }
-}
\ No newline at end of file
+
+    // Ответ из проекции findFirstRepliesOfThreads и его путь (курсор следующей порции ответов)
+    private record ReplyRow(CommentDTO dto, String path) {
+    }
+
+    // Строка проекции findFirstRepliesOfThreads, порядок колонок - в комментарии к запросу
+    private CommentDTO convertToDTO(Object[] row) {
+        CommentDTO dto = new CommentDTO();
+        dto.setId((Long) row[0]);
+        dto.setContent((String) row[1]);
+        dto.setCreatedAt(toLocalDateTime(row[2]));
+        dto.setUpdatedAt(toLocalDateTime(row[3]));
+        dto.setArticleId((Long) row[4]);
+        dto.setParentCommentId((Long) row[5]);
+        dto.setRootId((Long) row[6]);
+        dto.setDepth(depthOf((String) row[7]));
+
+        UserSimpleDTO authorDTO = new UserSimpleDTO();
+        authorDTO.setId((Long) row[8]);
+        authorDTO.setName((String) row[9]);
+        authorDTO.setIcon((String) row[10]);
+        dto.setAuthor(authorDTO);
+
+        return dto;
+    }
+
+    private LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof java.sql.Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        return (LocalDateTime) value;
+    }
+
+    // Сегмент пути: id, дополненный нулями до 10 знаков, чтобы строки сравнивались как числа
+    private String pathSegment(Long id) {
+        return String.format("%010d", id);
+    }
+
+    private int depthOf(String path) {
+        if (path == null) {
+            return 0;
+        }
+        return (int) path.chars().filter(ch -> ch == '.').count();
+    }
+
+    private record RootCursor(LocalDateTime createdAt, Long id) {
+    }
+
+    private String encodeRootCursor(LocalDateTime createdAt, Long id) {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private RootCursor decodeRootCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new RootCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Некорректный курсор комментариев");
+        }
+    }
+}
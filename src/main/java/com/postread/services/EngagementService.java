@@ -0,0 +1,69 @@
+package com.postread.services;
+
+import com.postread.data.ReactionType;
+import com.postread.dto.ArticleEngagementDTO;
+import com.postread.dto.EngagementState;
+import com.postread.repositories.BookmarkRepository;
+import com.postread.repositories.ReactionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Закладки и реакции текущего пользователя сразу для всех карточек страницы:
+ * два запроса с IN по уникальным индексам (user_id, article_id) вместо проверок по одной статье
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class EngagementService {
+
+    public static final int MAX_ARTICLE_IDS = 100;
+
+    private final BookmarkRepository bookmarkRepository;
+    private final ReactionRepository reactionRepository;
+
+    public EngagementState getEngagement(Long userId, Collection<Long> articleIds) {
+        if (userId == null) {
+            return new EngagementState(false, Map.of());
+        }
+
+        Set<Long> ids = articleIds.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (ids.size() > MAX_ARTICLE_IDS) {
+            throw new IllegalArgumentException("Не более " + MAX_ARTICLE_IDS + " статей за запрос");
+        }
+        if (ids.isEmpty()) {
+            return new EngagementState(true, Map.of());
+        }
+
+        Map<Long, ArticleEngagementDTO> states = new LinkedHashMap<>();
+        for (Long articleId : bookmarkRepository.findBookmarkedArticleIds(userId, ids)) {
+            states.computeIfAbsent(articleId, id -> new ArticleEngagementDTO()).setBookmarked(true);
+        }
+
+        List<Object[]> reactions = reactionRepository.findUserReactionTypes(userId, ids);
+        for (Object[] row : reactions) {
+            Long articleId = ((Number) row[0]).longValue();
+            Integer code = (Integer) row[1];
+            if (code == null) {
+                continue;
+            }
+            ArticleEngagementDTO state = states.computeIfAbsent(articleId, id -> new ArticleEngagementDTO());
+            state.setReaction(code);
+            state.setReactionEmoji(ReactionType.fromCode(code).getEmoji());
+        }
+
+        return new EngagementState(true, states);
+    }
+}
@@ -1,5 +1,6 @@
 package com.postread.services;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -12,8 +13,11 @@ import java.nio.file.StandardCopyOption;
 import java.util.UUID;
 
 @Service
+@RequiredArgsConstructor
 public class FileStorageService {
 
+    private final ImageDerivativeService imageDerivativeService;
+
     @Value("${app.upload.dir:/uploads}")
     private String uploadDir;
 
@@ -38,6 +42,9 @@ public class FileStorageService {
             Path targetLocation = uploadPath.resolve(fileName);
             Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
 
+            // Уменьшенные копии для ленты и статьи готовятся в фоне
+            imageDerivativeService.submitArticleImage(fileName);
+
             return fileName;
         } catch (IOException ex) {
             throw new RuntimeException("Could not store file " + file.getOriginalFilename(), ex);
@@ -0,0 +1,339 @@
+package com.postread.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.postread.data.Multimedia;
+import com.postread.repositories.MultimediaRepository;
+import com.postread.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Фоновая генерация уменьшенных копий загруженных изображений
+ * (аватары 64/128px, изображения статей шириной 480/960/1600px)
+ * и выбор подходящего варианта при отдаче файла
+ */
+@Service
+public class ImageDerivativeService {
+
+    public static final int[] AVATAR_SIZES = {64, 128};
+    public static final int[] ARTICLE_WIDTHS = {480, 960, 1600};
+
+    // GIF может быть анимированным, SVG и WebP стандартный ImageIO не читает - их отдаем как есть
+    private static final Set<String> RESIZABLE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "bmp");
+
+    // Защита от "пиксельных бомб": 10MB файла могут развернуться в гигабайты в памяти
+    private static final long MAX_SOURCE_PIXELS = 40_000_000L;
+
+    private static final float JPEG_QUALITY = 0.82f;
+
+    private static final String AVATAR_URL_PREFIX = "/uploads/avatar_";
+
+    private final MultimediaRepository multimediaRepository;
+    private final UserRepository userRepository;
+    private final ThreadPoolExecutor executor;
+    private final Cache<String, List<Variant>> variantsByOriginal;
+
+    @Value("${app.upload.dir:/uploads}")
+    private String uploadDir;
+
+    public ImageDerivativeService(MultimediaRepository multimediaRepository,
+                                  UserRepository userRepository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.images.workers:2}") int workers,
+                                  @Value("${app.images.queue-capacity:200}") int queueCapacity) {
+        this.multimediaRepository = multimediaRepository;
+        this.userRepository = userRepository;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-derivatives-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // Очередь заполнена - пропускаем: исходник все равно будет отдаваться
+                (runnable, pool) -> System.out.println("Очередь обработки изображений заполнена, задача пропущена"));
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "image-derivatives");
+
+        this.variantsByOriginal = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofMinutes(10))
+                .build();
+    }
+
+    /**
+     * Поставить в очередь генерацию вариантов изображения статьи
+     */
+    public void submitArticleImage(String fileName) {
+        submit(fileName, ARTICLE_WIDTHS, false);
+    }
+
+    /**
+     * Поставить в очередь генерацию квадратных вариантов аватара
+     */
+    public void submitAvatar(String fileName) {
+        submit(fileName, AVATAR_SIZES, true);
+    }
+
+    /**
+     * Подходящий вариант изображения для требуемой ширины: самый узкий из тех,
+     * что не уже запрошенного, иначе самый широкий.
+     * Пустой результат - варианты еще не готовы или файл не является изображением.
+     */
+    public Optional<String> findBestVariant(String fileName, int width) {
+        List<Variant> variants = variantsByOriginal.get(fileName, this::loadVariants);
+        if (variants.isEmpty()) {
+            return Optional.empty();
+        }
+        for (Variant variant : variants) {
+            if (variant.width() >= width) {
+                return Optional.of(variant.fileName());
+            }
+        }
+        return Optional.of(variants.get(variants.size() - 1).fileName());
+    }
+
+    /**
+     * Удалить изображения вместе с уменьшенными копиями: файлы и записи multimedia
+     * (по original_file_name). Удаляются только файлы непосредственно в каталоге загрузок.
+     */
+    public void delete(Collection<String> fileNames) {
+        Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        for (String fileName : fileNames) {
+            List<Multimedia> records = multimediaRepository.findByOriginalFileNameOrderByWidthAsc(fileName);
+            Set<String> files = new LinkedHashSet<>();
+            files.add(fileName);
+            records.forEach(media -> files.add(media.getFileName()));
+
+            for (String name : files) {
+                Path file = root.resolve(name).normalize();
+                if (!root.equals(file.getParent())) {
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    System.out.println("Не удалось удалить файл " + name + ": " + e.getMessage());
+                }
+            }
+            multimediaRepository.deleteAll(records);
+            variantsByOriginal.invalidate(fileName);
+        }
+    }
+
+    /**
+     * Удалить прежний загруженный аватар (после смены или удаления), если он больше ни у кого не указан
+     */
+    public void deleteAvatarIfUnused(String iconUrl) {
+        if (iconUrl == null || !iconUrl.startsWith(AVATAR_URL_PREFIX) || userRepository.existsByIcon(iconUrl)) {
+            return;
+        }
+        try {
+            delete(List.of(iconUrl.substring("/uploads/".length())));
+        } catch (RuntimeException e) {
+            System.out.println("Ошибка удаления прежнего аватара " + iconUrl + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void submit(String fileName, int[] sizes, boolean square) {
+        if (!RESIZABLE_EXTENSIONS.contains(extension(fileName))) {
+            return;
+        }
+        executor.execute(() -> generate(fileName, sizes, square));
+    }
+
+    private void generate(String fileName, int[] sizes, boolean square) {
+        Path uploadPath = Paths.get(uploadDir);
+        Path source = uploadPath.resolve(fileName);
+        try {
+            if (!fitsInMemory(source)) {
+                System.out.println("Изображение слишком большое для обработки: " + fileName);
+                return;
+            }
+            BufferedImage image = ImageIO.read(source.toFile());
+            if (image == null) {
+                return;
+            }
+
+            List<Multimedia> records = new ArrayList<>();
+            records.add(record(fileName, fileName, image.getWidth(), image.getHeight()));
+
+            boolean alpha = image.getColorModel().hasAlpha();
+            String format = alpha ? "png" : "jpg";
+            String baseName = fileName.substring(0, fileName.lastIndexOf('.'));
+
+            for (int size : sizes) {
+                BufferedImage variant;
+                if (square) {
+                    if (Math.min(image.getWidth(), image.getHeight()) <= size) {
+                        continue;
+                    }
+                    variant = resize(cropToSquare(image), size, size, alpha);
+                } else {
+                    if (image.getWidth() <= size) {
+                        continue;
+                    }
+                    int height = Math.max(1, Math.round((float) image.getHeight() * size / image.getWidth()));
+                    variant = resize(image, size, height, alpha);
+                }
+
+                String variantName = baseName + "_w" + size + "." + format;
+                write(variant, format, uploadPath.resolve(variantName));
+                records.add(record(variantName, fileName, variant.getWidth(), variant.getHeight()));
+            }
+
+            // Исходник удалили, пока готовились варианты - не оставляем их без владельца
+            if (!Files.exists(source)) {
+                for (Multimedia media : records.subList(1, records.size())) {
+                    Files.deleteIfExists(uploadPath.resolve(media.getFileName()));
+                }
+                return;
+            }
+
+            multimediaRepository.saveAll(records);
+            variantsByOriginal.invalidate(fileName);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Ошибка обработки изображения " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    private List<Variant> loadVariants(String fileName) {
+        return multimediaRepository.findByOriginalFileNameOrderByWidthAsc(fileName).stream()
+                .filter(media -> media.getWidth() != null)
+                .map(media -> new Variant(media.getFileName(), media.getWidth()))
+                .collect(Collectors.toList());
+    }
+
+    // Размеры читаются из заголовка файла, без декодирования пикселей
+    private boolean fitsInMemory(Path source) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            if (input == null) {
+                return false;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return false;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return (long) reader.getWidth(0) * reader.getHeight(0) <= MAX_SOURCE_PIXELS;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage cropToSquare(BufferedImage image) {
+        int side = Math.min(image.getWidth(), image.getHeight());
+        int x = (image.getWidth() - side) / 2;
+        int y = (image.getHeight() - side) / 2;
+        return image.getSubimage(x, y, side, side);
+    }
+
+    // Уменьшение в несколько шагов вдвое: одно билинейное сжатие с большим коэффициентом дает "лесенку"
+    private BufferedImage resize(BufferedImage image, int width, int height, boolean alpha) {
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+
+        do {
+            int nextWidth = Math.max(width, currentWidth / 2);
+            int nextHeight = Math.max(height, currentHeight / 2);
+
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                if (!alpha) {
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, nextWidth, nextHeight);
+                }
+                graphics.drawImage(current, 0, 0, nextWidth, nextHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+
+            current = next;
+            currentWidth = nextWidth;
+            currentHeight = nextHeight;
+        } while (currentWidth != width || currentHeight != height);
+
+        return current;
+    }
+
+    // Пишем во временный файл и переименовываем, чтобы не отдать недописанный вариант
+    private void write(BufferedImage image, String format, Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        if ("jpg".equals(format)) {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(temp.toFile())) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+        } else {
+            ImageIO.write(image, format, temp.toFile());
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Multimedia record(String fileName, String originalFileName, int width, int height) {
+        Multimedia media = new Multimedia();
+        media.setFileName(fileName);
+        media.setOriginalFileName(originalFileName);
+        media.setUrl("/uploads/" + fileName);
+        media.setFileType("image/" + ("jpg".equals(extension(fileName)) ? "jpeg" : extension(fileName)));
+        media.setWidth(width);
+        media.setHeight(height);
+        return media;
+    }
+
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private record Variant(String fileName, int width) {
+    }
+}
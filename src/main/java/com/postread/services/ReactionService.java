@@ -1,12 +1,15 @@
 package com.postread.services;
 
-import com.postread.data.Article;
-import com.postread.data.Reaction;
+import com.postread.data.ReactionCounter;
 import com.postread.data.ReactionType;
-import com.postread.repositories.ArticleRepository;
+import com.postread.repositories.ReactionCounterRepository;
 import com.postread.repositories.ReactionRepository;
-import com.postread.security.User;
+import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,78 +21,116 @@ import java.util.Optional;
 @Service
 public class ReactionService {
 
+    // Поставить или сменить реакцию одним запросом. Существующая строка блокируется (FOR UPDATE),
+    // новая вставляется с ON CONFLICT DO NOTHING. Результат - прежний код реакции (0 - реакции не было);
+    // пустой результат - ничего не изменилось: та же реакция, статья удалена
+    // или параллельный запрос того же пользователя успел раньше
+    private static final String UPSERT_SQL =
+            "WITH old AS (" +
+            "    SELECT id, type FROM reactions WHERE user_id = :userId AND article_id = :articleId FOR UPDATE" +
+            "), changed AS (" +
+            "    UPDATE reactions r SET type = :type FROM old" +
+            "    WHERE r.id = old.id AND old.type IS DISTINCT FROM :type" +
+            "    RETURNING COALESCE(old.type, 0) AS previous" +
+            "), added AS (" +
+            "    INSERT INTO reactions (user_id, article_id, type)" +
+            "    SELECT :userId, :articleId, :type FROM articles" +
+            "    WHERE id = :articleId AND deleted_at IS NULL AND NOT EXISTS (SELECT 1 FROM old)" +
+            "    ON CONFLICT (user_id, article_id) DO NOTHING" +
+            "    RETURNING 0 AS previous" +
+            ") " +
+            "SELECT previous FROM changed UNION ALL SELECT previous FROM added";
+
+    private static final String ARTICLE_EXISTS_SQL =
+            "SELECT EXISTS (SELECT 1 FROM articles WHERE id = :articleId AND deleted_at IS NULL)";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM reactions WHERE user_id = :userId AND article_id = :articleId RETURNING type";
+
     @Autowired
     private ReactionRepository reactionRepository;
 
     @Autowired
-    private ArticleRepository articleRepository;
+    private ReactionCounterRepository reactionCounterRepository;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TrendingService trendingService;
+
+    @Value("${app.reactions.rebuild-batch-size:500}")
+    private int rebuildBatchSize;
 
     /**
-     * Добавить или изменить реакцию пользователя
+     * Добавить или изменить реакцию пользователя.
+     * Запись - один запрос по id (без загрузки пользователя и статьи), повторный клик
+     * и параллельные запросы не создают дублей; счетчики меняются только при реальном изменении.
+     *
+     * @return код реакции пользователя (при гонке с параллельным запросом - тот, что зафиксирован в БД)
+     * @throws EntityNotFoundException статья не существует или удалена
      */
     @Transactional
-    public Reaction addOrUpdateReaction(User user, Long articleId, ReactionType reactionType) {
-        // Получаем существующую статью из базы данных
-        Article article = articleRepository.findById(articleId)
-                .orElseThrow(() -> new RuntimeException("Статья не найдена с id: " + articleId));
-
-        // Проверяем, есть ли уже реакция от этого пользователя
-        Optional<Reaction> existingReaction = reactionRepository.findByUserAndArticle(user, article);
-
-        if (existingReaction.isPresent()) {
-            Reaction reaction = existingReaction.get();
-            reaction.setType(reactionType.getCode());
-            return reactionRepository.save(reaction);
+    public Integer addOrUpdateReaction(Long userId, Long articleId, ReactionType reactionType) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("articleId", articleId)
+                .addValue("type", reactionType.getCode());
+
+        List<Integer> previous = jdbcTemplate.queryForList(UPSERT_SQL, params, Integer.class);
+        if (previous.isEmpty()) {
+            // Ничего не изменилось: проверяем статью и возвращаем реакцию, которая реально записана
+            if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(ARTICLE_EXISTS_SQL, params, Boolean.class))) {
+                throw new EntityNotFoundException("Статья не найдена");
+            }
+            return reactionRepository.findTypeByUserIdAndArticleId(userId, articleId)
+                    .orElse(reactionType.getCode());
+        }
+
+        reactionCounterRepository.ensureExists(articleId);
+        int previousType = previous.get(0);
+        if (previousType > 0) {
+            reactionCounterRepository.adjust(articleId, previousType, -1);
         } else {
-            Reaction newReaction = new Reaction();
-            newReaction.setUser(user);
-            newReaction.setArticle(article);
-            newReaction.setType(reactionType.getCode());
-            return reactionRepository.save(newReaction);
+            // В рейтинг идет только первая реакция пользователя на статью, смена типа его не меняет
+            trendingService.recordReactionAfterCommit(userId, articleId, reactionType);
         }
+        reactionCounterRepository.adjust(articleId, reactionType.getCode(), 1);
+        return reactionType.getCode();
     }
 
     /**
      * Удалить реакцию пользователя
      */
     @Transactional
-    public void removeReaction(User user, Long articleId) {
-        Article article = articleRepository.findById(articleId)
-                .orElseThrow(() -> new RuntimeException("Статья не найдена с id: " + articleId));
-        reactionRepository.deleteByUserAndArticle(user, article);
+    public void removeReaction(Long userId, Long articleId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("articleId", articleId);
+
+        for (Integer type : jdbcTemplate.queryForList(DELETE_SQL, params, Integer.class)) {
+            if (type != null) {
+                reactionCounterRepository.adjust(articleId, type, -1);
+            }
+        }
     }
 
     /**
-     * Получить реакцию пользователя для статьи
+     * Получить код реакции пользователя для статьи
      */
-    public Optional<Reaction> getUserReaction(User user, Long articleId) {
-        Article article = articleRepository.findById(articleId)
-                .orElseThrow(() -> new RuntimeException("Статья не найдена с id: " + articleId));
-        return reactionRepository.findByUserAndArticle(user, article);
+    public Optional<Integer> getUserReaction(Long userId, Long articleId) {
+        return reactionRepository.findTypeByUserIdAndArticleId(userId, articleId);
     }
 
     /**
-     * Получить статистику реакций для статьи
+     * Получить статистику реакций для статьи (одно чтение по первичному ключу)
      */
     public Map<ReactionType, Long> getReactionStats(Long articleId) {
-        List<Object[]> results = reactionRepository.getReactionCountsByArticleId(articleId);
+        Optional<ReactionCounter> counter = reactionCounterRepository.findById(articleId);
         Map<ReactionType, Long> stats = new HashMap<>();
 
-        for (Object[] result : results) {
-            Integer typeCode = (Integer) result[0];
-            Long count = (Long) result[1];
-            try {
-                ReactionType type = ReactionType.fromCode(typeCode);
-                stats.put(type, count);
-            } catch (IllegalArgumentException e) {
-                // Игнорируем неизвестные коды реакций
-                System.err.println("Неизвестный код реакции: " + typeCode);
-            }
-        }
-
-        // Инициализируем все типы реакций с нулевым счетчиком
         for (ReactionType type : ReactionType.values()) {
-            stats.putIfAbsent(type, 0L);
+            stats.put(type, counter.map(c -> c.getCount(type)).orElse(0L));
         }
 
         return stats;
@@ -99,15 +140,33 @@ public class ReactionService {
      * Получить общее количество реакций для статьи
      */
     public long getTotalReactionsCount(Long articleId) {
-        return reactionRepository.findByArticleId(articleId).size();
+        return reactionCounterRepository.findById(articleId)
+                .map(ReactionCounter::getTotal)
+                .orElse(0);
+    }
+
+    /**
+     * Сверка денормализованных счетчиков с таблицей reactions небольшими порциями,
+     * каждая в своей транзакции, чтобы не держать блокировки на всех статьях сразу
+     */
+    @Scheduled(cron = "${app.reactions.rebuild-cron:0 30 3 * * *}")
+    public void rebuildReactionCounters() {
+        long afterId = 0L;
+        int checked = 0;
+        int fixed = 0;
+        List<Long> articleIds;
+        while (!(articleIds = reactionCounterRepository.findArticleIdsAfter(afterId, rebuildBatchSize)).isEmpty()) {
+            fixed += reactionCounterRepository.reconcile(articleIds);
+            checked += articleIds.size();
+            afterId = articleIds.get(articleIds.size() - 1);
+        }
+        System.out.println("Сверены счетчики реакций для статей: " + checked + ", исправлено: " + fixed);
     }
 
     /**
      * Проверить, поставил ли пользователь реакцию
      */
-    public boolean hasUserReacted(User user, Long articleId) {
-        Article article = articleRepository.findById(articleId)
-                .orElseThrow(() -> new RuntimeException("Статья не найдена с id: " + articleId));
-        return reactionRepository.existsByUserAndArticle(user, article);
+    public boolean hasUserReacted(Long userId, Long articleId) {
+        return reactionRepository.findTypeByUserIdAndArticleId(userId, articleId).isPresent();
     }
 }
\ No newline at end of file
@@ -0,0 +1,390 @@
+package com.postread.services;
+
+import com.postread.data.Article;
+import com.postread.data.ArticleBlock;
+import com.postread.data.Tag;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Похожие статьи: MinHash-сигнатуры по тегам и шинглам текста (тройки слов заголовка,
+ * описания и текстовых блоков), индекс LSH по полосам сигнатуры.
+ *
+ * Кандидаты - статьи, совпавшие с исходной хотя бы в одной полосе; сходство оценивается
+ * долей совпавших позиций сигнатуры (оценка коэффициента Жаккара). Теги добавляются
+ * несколькими признаками, чтобы не теряться среди шинглов длинного текста.
+ * В индексе только опубликованные оригинальные статьи.
+ */
+@Component
+public class RelatedArticlesIndex {
+
+    private static final int BANDS = 20;
+    private static final int ROWS = 3;
+    private static final int SIGNATURE_SIZE = BANDS * ROWS;
+
+    private static final int TAG_WEIGHT = 5;
+    private static final int SHINGLE_SIZE = 3;
+    // Длинные тексты учитываются по началу: для сходства этого достаточно
+    private static final int MAX_WORDS = 5000;
+    private static final int MAX_CANDIDATES = 2000;
+    private static final double MIN_SIMILARITY = 0.05;
+
+    private static final int LOAD_CHUNK_SIZE = 500;
+
+    private static final Pattern MARKUP = Pattern.compile("<[^>]*>");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    private static final long[] SEEDS = new long[SIGNATURE_SIZE];
+
+    static {
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            SEEDS[i] = seed;
+        }
+    }
+
+    private static final String IDS_SQL =
+            "SELECT CAST(id AS BIGINT) AS id, title, short_description FROM articles " +
+            "WHERE is_published = true AND review_for_article_id IS NULL AND deleted_at IS NULL";
+
+    private static final String TAGS_SQL =
+            "SELECT CAST(at.article_id AS BIGINT) AS article_id, t.name FROM articles_tags at " +
+            "JOIN tags t ON t.id = at.tag_id WHERE at.article_id IN (:ids)";
+
+    private static final String BLOCKS_SQL =
+            "SELECT CAST(article_id AS BIGINT) AS article_id, content FROM article_blocks " +
+            "WHERE article_id IN (:ids) AND block_type = 'text' ORDER BY article_id, block_order";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final Map<Integer, int[]> signatures = new HashMap<>();
+    private final List<Map<Long, Set<Integer>>> buckets = new ArrayList<>(BANDS);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Изменения, пришедшие во время построения индекса: повторяются поверх построенного (под lock)
+    private List<Runnable> changesDuringRebuild;
+
+    public RelatedArticlesIndex(NamedParameterJdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        for (int band = 0; band < BANDS; band++) {
+            buckets.add(new HashMap<>());
+        }
+        Gauge.builder("postread.related.indexed", this, RelatedArticlesIndex::size)
+                .description("Статьи в индексе похожих статей")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Построение индекса при старте: статьи читаются порциями, текст в памяти не хранится.
+     * Обновления, пришедшие во время чтения, применяются сразу и еще раз после замены индекса -
+     * построенные данные могли быть прочитаны до них.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Integer, int[]> built;
+        try {
+            built = load();
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            signatures.clear();
+            buckets.forEach(Map::clear);
+            built.forEach(this::addInternal);
+            changesDuringRebuild.forEach(Runnable::run);
+            changesDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("Индекс похожих статей построен: статей " + built.size());
+    }
+
+    // Сигнатуры всех опубликованных оригинальных статей из БД
+    private Map<Integer, int[]> load() {
+        Map<Long, String[]> headers = new LinkedHashMap<>();
+        jdbcTemplate.query(IDS_SQL, rs -> {
+            headers.put(rs.getLong("id"), new String[]{rs.getString("title"), rs.getString("short_description")});
+        });
+
+        Map<Integer, int[]> built = new HashMap<>();
+        List<Long> ids = new ArrayList<>(headers.keySet());
+        for (int from = 0; from < ids.size(); from += LOAD_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + LOAD_CHUNK_SIZE, ids.size()));
+            MapSqlParameterSource params = new MapSqlParameterSource("ids", chunk);
+
+            Map<Long, List<String>> tags = new HashMap<>();
+            jdbcTemplate.query(TAGS_SQL, params, rs -> {
+                tags.computeIfAbsent(rs.getLong("article_id"), id -> new ArrayList<>()).add(rs.getString("name"));
+            });
+            Map<Long, List<String>> texts = new HashMap<>();
+            jdbcTemplate.query(BLOCKS_SQL, params, rs -> {
+                texts.computeIfAbsent(rs.getLong("article_id"), id -> new ArrayList<>()).add(rs.getString("content"));
+            });
+
+            for (Long articleId : chunk) {
+                String[] header = headers.get(articleId);
+                int[] signature = signature(tags.getOrDefault(articleId, List.of()), header[0], header[1],
+                        texts.getOrDefault(articleId, List.of()));
+                if (signature != null) {
+                    built.put(Math.toIntExact(articleId), signature);
+                }
+            }
+        }
+        return built;
+    }
+
+    /**
+     * Обновить статью после фиксации текущей транзакции. Сигнатура считается сразу,
+     * пока блоки и теги статьи доступны; неопубликованные статьи и рецензии убираются из индекса.
+     *
+     * @param blocks актуальные блоки статьи (null - взять из статьи)
+     */
+    public void updateAfterCommit(Article article, List<ArticleBlock> blocks) {
+        Long articleId = article.getId();
+        if (!article.isPublished() || article.getReviewForArticle() != null) {
+            removeAfterCommit(List.of(articleId));
+            return;
+        }
+
+        List<String> tagNames = new ArrayList<>();
+        if (article.getTags() != null) {
+            for (Tag tag : article.getTags()) {
+                tagNames.add(tag.getName());
+            }
+        }
+        List<String> texts = new ArrayList<>();
+        for (ArticleBlock block : blocks != null ? blocks : article.getBlocks()) {
+            if ("text".equals(block.getType())) {
+                texts.add(block.getContent());
+            }
+        }
+        int[] signature = signature(tagNames, article.getTitle(), article.getShortDescription(), texts);
+
+        int id = Math.toIntExact(articleId);
+        AfterCommit.run(() -> change(() -> {
+            removeInternal(id);
+            if (signature != null) {
+                addInternal(id, signature);
+            }
+        }));
+    }
+
+    /**
+     * Убрать статьи из индекса после фиксации текущей транзакции
+     */
+    public void removeAfterCommit(Collection<Long> articleIds) {
+        List<Long> ids = List.copyOf(articleIds);
+        AfterCommit.run(() -> change(() ->
+                ids.forEach(articleId -> removeInternal(Math.toIntExact(articleId)))));
+    }
+
+    /**
+     * До limit статей, наиболее похожих на данную (по убыванию сходства)
+     */
+    public List<Long> findSimilar(Long articleId, int limit) {
+        lock.readLock().lock();
+        try {
+            int id = Math.toIntExact(articleId);
+            int[] signature = signatures.get(id);
+            if (signature == null) {
+                return List.of();
+            }
+
+            Set<Integer> candidates = new HashSet<>();
+            for (int band = 0; band < BANDS && candidates.size() < MAX_CANDIDATES; band++) {
+                Set<Integer> bucket = buckets.get(band).get(bandKey(signature, band));
+                if (bucket != null) {
+                    for (Integer candidate : bucket) {
+                        candidates.add(candidate);
+                        if (candidates.size() >= MAX_CANDIDATES) {
+                            break;
+                        }
+                    }
+                }
+            }
+            candidates.remove(id);
+
+            // Минимальная куча из limit лучших кандидатов: [сходство, id]
+            PriorityQueue<double[]> best = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(entry -> entry[0]));
+            for (Integer candidate : candidates) {
+                double similarity = similarity(signature, signatures.get(candidate));
+                if (similarity < MIN_SIMILARITY) {
+                    continue;
+                }
+                best.add(new double[]{similarity, candidate});
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+
+            List<Long> result = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                result.add((long) best.poll()[1]);
+            }
+            Collections.reverse(result);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return signatures.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Применить изменение; во время построения оно запоминается для повтора (изменения идемпотентны)
+    private void change(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addInternal(int articleId, int[] signature) {
+        signatures.put(articleId, signature);
+        for (int band = 0; band < BANDS; band++) {
+            buckets.get(band).computeIfAbsent(bandKey(signature, band), key -> new HashSet<>()).add(articleId);
+        }
+    }
+
+    private void removeInternal(int articleId) {
+        int[] signature = signatures.remove(articleId);
+        if (signature == null) {
+            return;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            long key = bandKey(signature, band);
+            Set<Integer> bucket = buckets.get(band).get(key);
+            if (bucket != null) {
+                bucket.remove(articleId);
+                if (bucket.isEmpty()) {
+                    buckets.get(band).remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * MinHash-сигнатура: для каждой из SIGNATURE_SIZE хэш-функций - минимум по признакам статьи.
+     * null - у статьи нет ни тегов, ни слов (такие статьи совпали бы друг с другом целиком)
+     */
+    static int[] signature(Collection<String> tagNames, String title, String description, Collection<String> texts) {
+        int[] signature = new int[SIGNATURE_SIZE];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+
+        for (String tagName : tagNames) {
+            for (int copy = 0; copy < TAG_WEIGHT; copy++) {
+                addFeature(signature, "#" + tagName + "#" + copy);
+            }
+        }
+
+        List<String> words = new ArrayList<>();
+        collectWords(words, title);
+        collectWords(words, description);
+        for (String text : texts) {
+            collectWords(words, MARKUP.matcher(text != null ? text : "").replaceAll(" "));
+        }
+        if (words.size() < SHINGLE_SIZE) {
+            words.forEach(word -> addFeature(signature, word));
+        } else {
+            for (int i = 0; i + SHINGLE_SIZE <= words.size(); i++) {
+                addFeature(signature, String.join(" ", words.subList(i, i + SHINGLE_SIZE)));
+            }
+        }
+        return tagNames.isEmpty() && words.isEmpty() ? null : signature;
+    }
+
+    private static void collectWords(List<String> words, String text) {
+        if (text == null || words.size() >= MAX_WORDS) {
+            return;
+        }
+        for (String word : NON_WORD.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+                if (words.size() >= MAX_WORDS) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void addFeature(int[] signature, String feature) {
+        long hash = fnv1a(feature);
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            int value = (int) (mix(hash ^ SEEDS[i]) >>> 33);
+            if (value < signature[i]) {
+                signature[i] = value;
+            }
+        }
+    }
+
+    private static double similarity(int[] first, int[] second) {
+        int equal = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            if (first[i] == second[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / SIGNATURE_SIZE;
+    }
+
+    private static long bandKey(int[] signature, int band) {
+        long key = band;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+            key = mix(key * 31 + signature[row]);
+        }
+        return key;
+    }
+
+    private static long fnv1a(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // Финализатор SplitMix64: хорошее перемешивание битов для независимых хэш-функций
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,98 @@
+package com.postread.services;
+
+import com.postread.data.SubscriptionKey;
+import com.postread.repositories.SubscriptionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class SubscriptionService {
+
+    // Подписка и счетчик подписчиков автора - одним запросом; повтор ничего не меняет
+    private static final String FOLLOW_SQL =
+            "WITH added AS (" +
+            "    INSERT INTO subscriptions (subscriber_id, target_id, created_at)" +
+            "    SELECT :subscriberId, id, now() FROM users WHERE id = :targetId" +
+            "    ON CONFLICT DO NOTHING" +
+            "    RETURNING target_id" +
+            ") " +
+            "UPDATE users SET follower_count = follower_count + 1 " +
+            "WHERE id IN (SELECT target_id FROM added) RETURNING follower_count";
+
+    private static final String UNFOLLOW_SQL =
+            "WITH removed AS (" +
+            "    DELETE FROM subscriptions WHERE subscriber_id = :subscriberId AND target_id = :targetId" +
+            "    RETURNING target_id" +
+            ") " +
+            "UPDATE users SET follower_count = follower_count - 1 " +
+            "WHERE id IN (SELECT target_id FROM removed) RETURNING follower_count";
+
+    private static final String FOLLOWER_COUNT_SQL = "SELECT follower_count FROM users WHERE id = :targetId";
+
+    private final SubscriptionRepository subscriptionRepository;
+    private final TimelineService timelineService;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Подписаться на автора; статьи автора сразу появляются в ленте подписок
+     *
+     * @return true, если подписка создана (false - уже была)
+     */
+    @Transactional
+    public boolean follow(Long subscriberId, Long targetId) {
+        if (subscriberId.equals(targetId)) {
+            throw new RuntimeException("Нельзя подписаться на самого себя");
+        }
+        List<Integer> followers = jdbcTemplate.queryForList(FOLLOW_SQL, params(subscriberId, targetId), Integer.class);
+        if (followers.isEmpty()) {
+            if (getFollowerCount(targetId) == null) {
+                throw new RuntimeException("Пользователь не найден");
+            }
+            return false;
+        }
+        timelineService.addAuthor(subscriberId, targetId, followers.get(0));
+        return true;
+    }
+
+    /**
+     * Отписаться от автора
+     *
+     * @return true, если подписка была
+     */
+    @Transactional
+    public boolean unfollow(Long subscriberId, Long targetId) {
+        boolean removed = !jdbcTemplate.queryForList(UNFOLLOW_SQL, params(subscriberId, targetId), Integer.class).isEmpty();
+        if (removed) {
+            timelineService.removeAuthor(subscriberId, targetId);
+        }
+        return removed;
+    }
+
+    public boolean isFollowing(Long subscriberId, Long targetId) {
+        return subscriptionRepository.existsById(new SubscriptionKey(targetId, subscriberId));
+    }
+
+    // Количество подписчиков автора (null - пользователя нет)
+    public Integer getFollowerCount(Long targetId) {
+        List<Integer> count = jdbcTemplate.queryForList(FOLLOWER_COUNT_SQL,
+                new MapSqlParameterSource("targetId", targetId), Integer.class);
+        return count.isEmpty() ? null : count.get(0);
+    }
+
+    public long getFollowingCount(Long subscriberId) {
+        return subscriptionRepository.countFollowing(subscriberId);
+    }
+
+    private MapSqlParameterSource params(Long subscriberId, Long targetId) {
+        return new MapSqlParameterSource()
+                .addValue("subscriberId", subscriberId)
+                .addValue("targetId", targetId);
+    }
+}
@@ -0,0 +1,168 @@
+package com.postread.services;
+
+import com.postread.data.Tag;
+import com.postread.repositories.TagRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Автодополнение тегов без запросов к БД: отсортированный по имени массив тегов,
+ * диапазон с нужным префиксом находится двоичным поиском, из него берутся
+ * самые используемые теги (вес - количество опубликованных статей из TagIndex).
+ *
+ * Массивы не меняются после публикации снимка: новый тег добавляется копированием
+ * (теги создаются редко), веса периодически пересчитываются целиком.
+ */
+@Component
+public class TagAutocomplete {
+
+    private final TagRepository tagRepository;
+    private final TagIndex tagIndex;
+
+    private volatile Snapshot snapshot = new Snapshot(new String[0], new Tag[0], new int[0]);
+
+    public TagAutocomplete(TagRepository tagRepository, TagIndex tagIndex) {
+        this.tagRepository = tagRepository;
+        this.tagIndex = tagIndex;
+    }
+
+    // names - нормализованные имена (как ищет TagService), отсортированы; tags и weights - в том же порядке.
+    // Старые теги могут быть записаны в другом регистре, поэтому ключ не всегда совпадает с Tag.name
+    private record Snapshot(String[] names, Tag[] tags, int[] weights) {
+    }
+
+    /**
+     * Загрузка тегов при старте (TagIndex к этому моменту уже построен, веса берутся из него)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        List<Tag> all = new ArrayList<>(tagRepository.findAll());
+        all.sort(Comparator.comparing((Tag tag) -> key(tag.getName())).thenComparing(Tag::getName));
+
+        String[] names = new String[all.size()];
+        Tag[] tags = new Tag[all.size()];
+        for (int i = 0; i < all.size(); i++) {
+            tags[i] = copy(all.get(i));
+            names[i] = key(tags[i].getName());
+        }
+        snapshot = new Snapshot(names, tags, weights(tags));
+        System.out.println("Индекс автодополнения тегов построен: тегов " + names.length);
+    }
+
+    /**
+     * Пересчет весов по текущему количеству статей
+     */
+    @Scheduled(fixedDelayString = "${app.tags.autocomplete-refresh-ms:60000}")
+    public synchronized void refreshWeights() {
+        Snapshot current = snapshot;
+        snapshot = new Snapshot(current.names(), current.tags(), weights(current.tags()));
+    }
+
+    /**
+     * Добавить созданный тег после фиксации текущей транзакции
+     */
+    public void addAfterCommit(Tag tag) {
+        Tag added = copy(tag);
+        AfterCommit.run(() -> add(added));
+    }
+
+    /**
+     * До limit тегов с именем, начинающимся с prefix (уже нормализованным), по убыванию веса
+     */
+    public List<Tag> complete(String prefix, int limit) {
+        Snapshot current = snapshot;
+        String[] names = current.names();
+        int from = lowerBound(names, prefix);
+        int to = from;
+        while (to < names.length && names[to].startsWith(prefix)) {
+            to++;
+        }
+
+        // Минимальная куча из limit лучших позиций диапазона
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, (a, b) -> compare(current, a, b));
+        for (int i = from; i < to; i++) {
+            best.add(i);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<Tag> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(copy(current.tags()[best.poll()]));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private synchronized void add(Tag tag) {
+        Snapshot current = snapshot;
+        String name = key(tag.getName());
+        // Под одним ключом может быть несколько тегов, отличающихся регистром
+        int insertAt = lowerBound(current.names(), name);
+        while (insertAt < current.names().length && current.names()[insertAt].equals(name)) {
+            if (Objects.equals(current.tags()[insertAt].getId(), tag.getId())) {
+                return;
+            }
+            insertAt++;
+        }
+        int size = current.names().length;
+
+        String[] names = new String[size + 1];
+        Tag[] tags = new Tag[size + 1];
+        int[] weights = new int[size + 1];
+        System.arraycopy(current.names(), 0, names, 0, insertAt);
+        System.arraycopy(current.tags(), 0, tags, 0, insertAt);
+        System.arraycopy(current.weights(), 0, weights, 0, insertAt);
+        names[insertAt] = name;
+        tags[insertAt] = tag;
+        System.arraycopy(current.names(), insertAt, names, insertAt + 1, size - insertAt);
+        System.arraycopy(current.tags(), insertAt, tags, insertAt + 1, size - insertAt);
+        System.arraycopy(current.weights(), insertAt, weights, insertAt + 1, size - insertAt);
+
+        snapshot = new Snapshot(names, tags, weights);
+    }
+
+    // TagIndex считает статьи по имени тега как оно записано в БД
+    private int[] weights(Tag[] tags) {
+        Map<String, Integer> counts = tagIndex.usageCounts();
+        int[] weights = new int[tags.length];
+        for (int i = 0; i < tags.length; i++) {
+            weights[i] = counts.getOrDefault(tags[i].getName(), 0);
+        }
+        return weights;
+    }
+
+    // Ключ поиска - имя тега, нормализованное как в TagService
+    private static String key(String name) {
+        return name.trim().toLowerCase();
+    }
+
+    // Порядок "хуже - раньше": меньший вес, при равенстве - позже по алфавиту
+    private static int compare(Snapshot snapshot, int a, int b) {
+        int byWeight = Integer.compare(snapshot.weights()[a], snapshot.weights()[b]);
+        return byWeight != 0 ? byWeight : Integer.compare(b, a);
+    }
+
+    private static int lowerBound(String[] names, String prefix) {
+        int low = 0;
+        int high = names.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (names[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static Tag copy(Tag tag) {
+        return new Tag(tag.getId(), tag.getName(), tag.getSlug());
+    }
+}
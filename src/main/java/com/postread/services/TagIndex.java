@@ -0,0 +1,368 @@
+package com.postread.services;
+
+import com.postread.data.Article;
+import com.postread.data.Tag;
+import com.postread.repositories.ArticleRepository;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Инвертированный индекс тег -> id опубликованных статей на сжатых битовых картах.
+ * Заменяет DISTINCT-джойн по articles_tags при поиске по тегам.
+ *
+ * Мощность битовой карты - количество опубликованных статей с тегом; по ней же поддерживается
+ * упорядоченный рейтинг тегов (популярные теги) и посуточные счетчики по дню первой публикации
+ * статьи за последние TRENDING_WINDOW_DAYS дней (теги в тренде). Все меняется вместе с индексом при публикации,
+ * снятии с публикации, правке и удалении статьи.
+ */
+@Component
+public class TagIndex {
+
+    public static final int TRENDING_WINDOW_DAYS = 7;
+
+    private final ArticleRepository articleRepository;
+
+    private final Map<String, RoaringBitmap> articlesByTag = new HashMap<>();
+    private final Map<Integer, Set<String>> tagsByArticle = new HashMap<>();
+    // Теги по убыванию количества статей
+    private final TreeSet<TagUsage> popularity = new TreeSet<>();
+    // День первой публикации статьи (epoch day) и количество статей с тегом по дням внутри окна трендов
+    private final Map<Integer, Long> dayByArticle = new HashMap<>();
+    // Дата создания статьи: порядок выдачи по тегам. С пулом последовательностей (allocationSize 50)
+    // id на разных узлах выдаются блоками и не совпадают с порядком создания
+    private final Map<Integer, LocalDateTime> createdAtByArticle = new HashMap<>();
+    private final TreeMap<Long, Map<String, Integer>> dailyUsage = new TreeMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Тег и количество статей с ним
+     */
+    public record TagUsage(String name, int count) implements Comparable<TagUsage> {
+        @Override
+        public int compareTo(TagUsage other) {
+            int byCount = Integer.compare(other.count, count);
+            return byCount != 0 ? byCount : name.compareTo(other.name);
+        }
+    }
+
+    public TagIndex(ArticleRepository articleRepository) {
+        this.articleRepository = articleRepository;
+    }
+
+    /**
+     * Построение индекса при старте приложения (раньше остальных слушателей: TagAutocomplete берет из него веса)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public void rebuild() {
+        List<Object[]> pairs = articleRepository.findPublishedArticleTagPairs();
+
+        lock.writeLock().lock();
+        try {
+            articlesByTag.clear();
+            tagsByArticle.clear();
+            popularity.clear();
+            dayByArticle.clear();
+            createdAtByArticle.clear();
+            dailyUsage.clear();
+            for (Object[] pair : pairs) {
+                int articleId = Math.toIntExact((Long) pair[0]);
+                dayByArticle.putIfAbsent(articleId, epochDay((LocalDateTime) pair[3]));
+                createdAtByArticle.putIfAbsent(articleId, orNow((LocalDateTime) pair[2]));
+                add(articleId, (String) pair[1]);
+            }
+            articlesByTag.values().forEach(RoaringBitmap::runOptimize);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("Индекс тегов построен: тегов " + articlesByTag.size() + ", статей " + tagsByArticle.size());
+    }
+
+    /**
+     * Обновить статью в индексе после фиксации текущей транзакции
+     */
+    public void updateAfterCommit(Article article) {
+        Long articleId = article.getId();
+        boolean published = article.isPublished();
+        LocalDateTime createdAt = article.getCreatedAt();
+        LocalDateTime publishedAt = article.getPublishedAt();
+        Set<String> tagNames = article.getTags() == null ? Set.of() : article.getTags().stream()
+                .map(Tag::getName)
+                .collect(Collectors.toSet());
+        AfterCommit.run(() -> {
+            if (published) {
+                index(articleId, tagNames, createdAt, publishedAt);
+            } else {
+                remove(articleId);
+            }
+        });
+    }
+
+    /**
+     * Удалить статью из индекса после фиксации текущей транзакции
+     */
+    public void removeAfterCommit(Long articleId) {
+        AfterCommit.run(() -> remove(articleId));
+    }
+
+    /**
+     * Заменить набор тегов опубликованной статьи
+     */
+    public void index(Long articleId, Collection<String> tagNames, LocalDateTime createdAt, LocalDateTime publishedAt) {
+        int id = Math.toIntExact(articleId);
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+            dayByArticle.put(id, epochDay(publishedAt));
+            createdAtByArticle.put(id, orNow(createdAt));
+            for (String tagName : tagNames) {
+                add(id, tagName);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long articleId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(Math.toIntExact(articleId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Статьи, у которых есть хотя бы один из тегов (OR)
+     */
+    public RoaringBitmap findAny(Collection<String> tagNames) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap result = new RoaringBitmap();
+            for (String tagName : tagNames) {
+                RoaringBitmap bitmap = articlesByTag.get(tagName);
+                if (bitmap != null) {
+                    result.or(bitmap);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Статьи, у которых есть все теги (AND)
+     */
+    public RoaringBitmap findAll(Collection<String> tagNames) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap result = null;
+            for (String tagName : tagNames) {
+                RoaringBitmap bitmap = articlesByTag.get(tagName);
+                if (bitmap == null) {
+                    return new RoaringBitmap();
+                }
+                result = result == null ? bitmap.clone() : RoaringBitmap.and(result, bitmap);
+            }
+            return result != null ? result : new RoaringBitmap();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Самые используемые теги: первые limit элементов упорядоченного рейтинга
+     */
+    public List<TagUsage> topTags(int limit) {
+        lock.readLock().lock();
+        try {
+            List<TagUsage> top = new ArrayList<>(Math.min(limit, popularity.size()));
+            for (TagUsage usage : popularity) {
+                if (top.size() >= limit) {
+                    break;
+                }
+                top.add(usage);
+            }
+            return top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Теги статей, впервые опубликованных за последние TRENDING_WINDOW_DAYS дней
+     */
+    public List<TagUsage> trendingTags(int limit) {
+        long firstDay = LocalDate.now().toEpochDay() - TRENDING_WINDOW_DAYS + 1;
+        Map<String, Integer> counts = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (Map<String, Integer> day : dailyUsage.tailMap(firstDay, true).values()) {
+                day.forEach((tagName, count) -> counts.merge(tagName, count, Integer::sum));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return counts.entrySet().stream()
+                .map(entry -> new TagUsage(entry.getKey(), entry.getValue()))
+                .sorted()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Количество опубликованных статей с тегом
+     */
+    public int countArticles(String tagName) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap bitmap = articlesByTag.get(tagName);
+            return bitmap != null ? bitmap.getCardinality() : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Количество статей по всем используемым тегам (снимок)
+     */
+    public Map<String, Integer> usageCounts() {
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> counts = new HashMap<>(popularity.size() * 2);
+            for (TagUsage usage : popularity) {
+                counts.put(usage.name(), usage.count());
+            }
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Удаление посуточных счетчиков, вышедших за окно трендов
+     */
+    @Scheduled(cron = "${app.tags.trending-prune-cron:0 5 0 * * *}")
+    public void pruneTrendingWindow() {
+        long firstDay = LocalDate.now().toEpochDay() - TRENDING_WINDOW_DAYS + 1;
+        lock.writeLock().lock();
+        try {
+            dailyUsage.headMap(firstDay, false).clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Страница id из битовой карты по убыванию даты создания (новые статьи первыми).
+     * Первые offset + limit статей отбираются кучей без сортировки всей карты.
+     */
+    public List<Long> pageNewestFirst(RoaringBitmap ids, long offset, int limit) {
+        long cardinality = ids.getLongCardinality();
+        if (limit <= 0 || offset >= cardinality) {
+            return new ArrayList<>();
+        }
+        int needed = (int) Math.min(offset + limit, cardinality);
+
+        lock.readLock().lock();
+        try {
+            Comparator<Integer> newestFirst = Comparator
+                    .comparing((Integer id) -> createdAtByArticle.getOrDefault(id, LocalDateTime.MIN))
+                    .thenComparing(Comparator.naturalOrder())
+                    .reversed();
+            // На вершине кучи - самая старая из отобранных статей
+            PriorityQueue<Integer> newest = new PriorityQueue<>(needed + 1, newestFirst.reversed());
+            for (int id : ids) {
+                newest.add(id);
+                if (newest.size() > needed) {
+                    newest.poll();
+                }
+            }
+            return newest.stream()
+                    .sorted(newestFirst)
+                    .skip(offset)
+                    .map(Integer::longValue)
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Вызывается под блокировкой записи; день статьи уже записан в dayByArticle
+    private void add(int articleId, String tagName) {
+        RoaringBitmap bitmap = articlesByTag.computeIfAbsent(tagName, name -> new RoaringBitmap());
+        int before = bitmap.getCardinality();
+        if (!bitmap.checkedAdd(articleId)) {
+            return;
+        }
+        tagsByArticle.computeIfAbsent(articleId, id -> new HashSet<>()).add(tagName);
+        updatePopularity(tagName, before, before + 1);
+        adjustDailyUsage(dayByArticle.get(articleId), tagName, 1);
+    }
+
+    private void removeInternal(int articleId) {
+        Set<String> previous = tagsByArticle.remove(articleId);
+        Long day = dayByArticle.remove(articleId);
+        createdAtByArticle.remove(articleId);
+        if (previous == null) {
+            return;
+        }
+        for (String tagName : previous) {
+            RoaringBitmap bitmap = articlesByTag.get(tagName);
+            if (bitmap != null) {
+                int before = bitmap.getCardinality();
+                if (bitmap.checkedRemove(articleId)) {
+                    updatePopularity(tagName, before, before - 1);
+                    adjustDailyUsage(day, tagName, -1);
+                }
+                if (bitmap.isEmpty()) {
+                    articlesByTag.remove(tagName);
+                }
+            }
+        }
+    }
+
+    private void updatePopularity(String tagName, int before, int after) {
+        if (before > 0) {
+            popularity.remove(new TagUsage(tagName, before));
+        }
+        if (after > 0) {
+            popularity.add(new TagUsage(tagName, after));
+        }
+    }
+
+    // Счетчики ведутся только для дней внутри окна трендов
+    private void adjustDailyUsage(Long day, String tagName, int delta) {
+        if (day == null || day < LocalDate.now().toEpochDay() - TRENDING_WINDOW_DAYS + 1) {
+            return;
+        }
+        Map<String, Integer> counts = dailyUsage.computeIfAbsent(day, d -> new HashMap<>());
+        Integer updated = counts.merge(tagName, delta, Integer::sum);
+        if (updated != null && updated <= 0) {
+            counts.remove(tagName);
+        }
+        if (counts.isEmpty()) {
+            dailyUsage.remove(day);
+        }
+    }
+
+    private static long epochDay(LocalDateTime publishedAt) {
+        return orNow(publishedAt).toLocalDate().toEpochDay();
+    }
+
+    private static LocalDateTime orNow(LocalDateTime time) {
+        return time != null ? time : LocalDateTime.now();
+    }
+}
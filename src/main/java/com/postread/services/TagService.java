@@ -1,42 +1,141 @@
 package com.postread.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.postread.data.Tag;
 import com.postread.repositories.TagRepository;
-import org.springframework.beans.factory.annotation.Autowired;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 public class TagService {
 
-    @Autowired
-    private TagRepository tagRepository;
+    private static final int AUTOCOMPLETE_LIMIT = 10;
+
+    // Создание недостающих тегов и чтение уже существующих - одним запросом.
+    // Основной запрос не видит строк, вставленных им же, поэтому дублей в ответе нет;
+    // created отмечает теги, созданные этим запросом.
+    private static final String RESOLVE_SQL =
+            "WITH input(name, slug) AS (" +
+            "    SELECT * FROM unnest(CAST(? AS varchar[]), CAST(? AS varchar[]))" +
+            "), inserted AS (" +
+            "    INSERT INTO tags (name, slug) SELECT name, slug FROM input" +
+            "    ON CONFLICT DO NOTHING" +
+            "    RETURNING id, name, slug" +
+            ") " +
+            "SELECT CAST(id AS BIGINT) AS id, name, slug, true AS created FROM inserted " +
+            "UNION ALL " +
+            "SELECT CAST(t.id AS BIGINT), t.name, t.slug, false FROM tags t JOIN input i ON i.name = t.name";
+
+    private final TagRepository tagRepository;
+    private final TagIndex tagIndex;
+    private final TagAutocomplete tagAutocomplete;
+    private final JdbcTemplate jdbcTemplate;
+
+    // Имя -> тег: теги не переименовываются и не удаляются, записи можно не сбрасывать
+    private final Cache<String, Tag> tagsByName;
+
+    public TagService(TagRepository tagRepository,
+                      TagIndex tagIndex,
+                      TagAutocomplete tagAutocomplete,
+                      JdbcTemplate jdbcTemplate,
+                      MeterRegistry meterRegistry,
+                      @Value("${app.cache.tags.max-size:50000}") long maxSize) {
+        this.tagRepository = tagRepository;
+        this.tagIndex = tagIndex;
+        this.tagAutocomplete = tagAutocomplete;
+        this.jdbcTemplate = jdbcTemplate;
+        this.tagsByName = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, tagsByName, "tags");
+    }
 
     @Transactional
     public Tag findOrCreateTag(String tagName) {
-        String normalizedName = normalizeTagName(tagName);
-        String slug = generateSlug(normalizedName);
-
-        return tagRepository.findByName(normalizedName)
-                .orElseGet(() -> {
-                    Tag newTag = new Tag();
-                    newTag.setName(normalizedName);
-                    newTag.setSlug(slug);
-                    return tagRepository.save(newTag);
-                });
+        Set<Tag> tags = findOrCreateTags(Set.of(tagName));
+        if (tags.isEmpty()) {
+            throw new RuntimeException("Пустое имя тега");
+        }
+        return tags.iterator().next();
     }
 
+    /**
+     * Теги по именам: известные - из кэша, остальные находятся и при необходимости
+     * создаются одним запросом. Возвращаются отсоединенные экземпляры с id -
+     * Article.tags не каскадирует сохранение, в articles_tags пишутся только ссылки.
+     */
     @Transactional
     public Set<Tag> findOrCreateTags(Set<String> tagNames) {
-        return tagNames.stream()
-                .map(this::findOrCreateTag)
-                .collect(Collectors.toSet());
+        Set<Tag> result = new HashSet<>();
+        Map<String, String> missing = new LinkedHashMap<>();
+        for (String tagName : tagNames) {
+            String normalizedName = normalizeTagName(tagName);
+            if (normalizedName.isEmpty()) {
+                continue;
+            }
+            Tag cached = tagsByName.getIfPresent(normalizedName);
+            if (cached != null) {
+                result.add(copy(cached));
+            } else {
+                missing.put(normalizedName, generateSlug(normalizedName));
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        List<Tag> resolved = new ArrayList<>();
+        List<Tag> created = new ArrayList<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(RESOLVE_SQL);
+            statement.setArray(1, connection.createArrayOf("varchar", missing.keySet().toArray()));
+            statement.setArray(2, connection.createArrayOf("varchar", missing.values().toArray()));
+            return statement;
+        }, rs -> {
+            Tag tag = new Tag(rs.getLong("id"), rs.getString("name"), rs.getString("slug"));
+            resolved.add(tag);
+            if (rs.getBoolean("created")) {
+                created.add(tag);
+            }
+        });
+
+        Set<String> found = new HashSet<>();
+        resolved.forEach(tag -> found.add(tag.getName()));
+        if (found.size() < missing.size()) {
+            // Тег создан параллельной транзакцией после начала запроса - теперь он виден
+            List<String> raced = missing.keySet().stream()
+                    .filter(name -> !found.contains(name))
+                    .collect(Collectors.toList());
+            for (Tag tag : tagRepository.findByNameIn(raced)) {
+                resolved.add(new Tag(tag.getId(), tag.getName(), tag.getSlug()));
+                found.add(tag.getName());
+            }
+        }
+        if (found.size() < missing.size()) {
+            // Например, slug совпал со slug другого тега
+            throw new RuntimeException("Не удалось создать теги: " + missing.keySet().stream()
+                    .filter(name -> !found.contains(name))
+                    .collect(Collectors.joining(", ")));
+        }
+
+        result.addAll(resolved);
+        created.forEach(tagAutocomplete::addAfterCommit);
+        // В кэш - только после фиксации: созданный тег может откатиться вместе с транзакцией
+        AfterCommit.run(() -> resolved.forEach(tag -> tagsByName.put(tag.getName(), copy(tag))));
+        return result;
     }
 
-    @Transactional(readOnly = true)
+    @Transactional
     public Set<Tag> extractTagsFromText(String text) {
         if (text == null || text.trim().isEmpty()) {
             return new HashSet<>();
@@ -50,27 +149,69 @@ public class TagService {
             tagNames.add(matcher.group(1));
         }
 
-        return tagNames.stream()
+        return findOrCreateTags(tagNames.stream()
                 .limit(3)
-                .map(this::findOrCreateTag)
-                .collect(Collectors.toSet());
+                .collect(Collectors.toSet()));
     }
 
     @Transactional(readOnly = true)
     public List<Tag> searchTags(String query) {
         if (query == null || query.trim().isEmpty()) {
-            return tagRepository.findAll().stream().limit(10).collect(Collectors.toList());
+            return getPopularTags(10);
         }
-        return tagRepository.searchTags(query.trim());
+        // Префиксный поиск в памяти (TagAutocomplete), без LIKE-сканирования таблицы тегов
+        return tagAutocomplete.complete(normalizeTagName(query), AUTOCOMPLETE_LIMIT);
     }
 
+    // Теги с наибольшим количеством опубликованных статей (рейтинг ведет TagIndex)
     @Transactional(readOnly = true)
     public List<Tag> getPopularTags(int limit) {
-        return tagRepository.findAll().stream()
-                .limit(limit)
+        return loadInOrder(tagIndex.topTags(limit));
+    }
+
+    // Самые используемые теги статей за последние TagIndex.TRENDING_WINDOW_DAYS дней
+    @Transactional(readOnly = true)
+    public List<Tag> getTrendingTags(int limit) {
+        return loadInOrder(tagIndex.trendingTags(limit));
+    }
+
+    // Теги в порядке рейтинга: из кэша, недостающие - одним запросом
+    private List<Tag> loadInOrder(List<TagIndex.TagUsage> ranking) {
+        if (ranking.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> names = ranking.stream().map(TagIndex.TagUsage::name).collect(Collectors.toList());
+        Map<String, Tag> byName = new HashMap<>(tagsByName.getAllPresent(names));
+        if (byName.size() < names.size()) {
+            List<String> missing = names.stream()
+                    .filter(name -> !byName.containsKey(name))
+                    .collect(Collectors.toList());
+            for (Tag tag : tagRepository.findByNameIn(missing)) {
+                Tag loaded = copy(tag);
+                byName.putIfAbsent(loaded.getName(), loaded);
+                tagsByName.put(loaded.getName(), loaded);
+            }
+        }
+        return names.stream()
+                .map(byName::get)
+                .filter(Objects::nonNull)
+                .map(TagService::copy)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Нормализованные имена тегов (как их сохраняет findOrCreateTags), без пустых
+     */
+    public Set<String> normalizeTagNames(Collection<String> tagNames) {
+        Set<String> normalized = new HashSet<>();
+        for (String tagName : tagNames) {
+            if (tagName != null && !normalizeTagName(tagName).isEmpty()) {
+                normalized.add(normalizeTagName(tagName));
+            }
+        }
+        return normalized;
+    }
+
     private String normalizeTagName(String tagName) {
         return tagName.trim().toLowerCase();
     }
@@ -81,4 +222,8 @@ public class TagService {
                 .replaceAll("-+", "-")
                 .replaceAll("^-|-$", "");
     }
-}
\ No newline at end of file
+
+    private static Tag copy(Tag tag) {
+        return new Tag(tag.getId(), tag.getName(), tag.getSlug());
+    }
+}
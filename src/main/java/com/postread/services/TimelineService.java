@@ -0,0 +1,201 @@
+package com.postread.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Лента подписок (home_timeline): опубликованная статья раздается в ленты подписчиков автора
+ * одним INSERT ... SELECT, страница ленты - один keyset-запрос по индексу (user_id, created_at, article_id).
+ *
+ * Статьи авторов, у которых подписчиков не меньше app.timeline.fan-out-limit, не раздаются:
+ * они помечаются articles.timeline_pull и подмешиваются в тот же запрос чтения напрямую из articles -
+ * в том числе после того, как число подписчиков автора опустится ниже порога.
+ * Лента каждого пользователя ограничена app.timeline.max-entries записями: после раздачи
+ * и подписки обрезаются только ленты, в которые что-то добавилось.
+ */
+@Service
+public class TimelineService {
+
+    // Статья крупного автора не раздается, а читается из articles: отметка фиксируется при публикации
+    private static final String MARK_PULL_SQL =
+            "UPDATE articles a SET timeline_pull = (u.follower_count >= :fanOutLimit) " +
+            "FROM users u WHERE a.id = :articleId AND u.id = a.author_id AND a.is_published = true " +
+            "AND a.timeline_pull IS DISTINCT FROM (u.follower_count >= :fanOutLimit)";
+
+    // Раздача статьи подписчикам автора; для видимой статьи повторный вызов ничего не меняет.
+    // Возвращает подписчиков, в ленты которых статья добавилась
+    private static final String FAN_OUT_SQL =
+            "INSERT INTO home_timeline (user_id, article_id, author_id, created_at) " +
+            "SELECT s.subscriber_id, a.id, a.author_id, a.created_at " +
+            "FROM articles a " +
+            "JOIN subscriptions s ON s.target_id = a.author_id " +
+            "WHERE a.id = :articleId AND a.is_published = true AND a.review_for_article_id IS NULL " +
+            "AND a.deleted_at IS NULL AND a.timeline_pull = false " +
+            "ON CONFLICT DO NOTHING RETURNING user_id";
+
+    // Статья снята с публикации или удалена - убираем ее из всех лент
+    private static final String RETRACT_SQL =
+            "DELETE FROM home_timeline WHERE article_id = :articleId AND NOT EXISTS (" +
+            "SELECT 1 FROM articles WHERE id = :articleId AND is_published = true " +
+            "AND review_for_article_id IS NULL AND deleted_at IS NULL)";
+
+    private static final String REMOVE_ARTICLES_SQL =
+            "DELETE FROM home_timeline WHERE article_id IN (:articleIds)";
+
+    // Новая подписка: последние статьи автора сразу попадают в ленту подписчика
+    private static final String BACKFILL_SQL =
+            "INSERT INTO home_timeline (user_id, article_id, author_id, created_at) " +
+            "SELECT :userId, a.id, a.author_id, a.created_at FROM articles a " +
+            "WHERE a.author_id = :authorId AND a.is_published = true AND a.review_for_article_id IS NULL " +
+            "AND a.deleted_at IS NULL " +
+            "ORDER BY a.created_at DESC, a.id DESC LIMIT :limit " +
+            "ON CONFLICT DO NOTHING";
+
+    private static final String REMOVE_AUTHOR_SQL =
+            "DELETE FROM home_timeline WHERE user_id = :userId AND author_id = :authorId";
+
+    // Раздача по лентам + нераздававшиеся статьи авторов, на которых подписан пользователь,
+    // и все статьи авторов, которые сейчас выше порога (подписчик мог прийти уже после раздачи).
+    // UNION убирает статьи, попавшие в обе части.
+    private static final String PAGE_SQL =
+            "(SELECT article_id, created_at FROM home_timeline " +
+            " WHERE user_id = :userId %1$s " +
+            " ORDER BY created_at DESC, article_id DESC LIMIT :limit) " +
+            "UNION " +
+            "(SELECT a.id, a.created_at FROM subscriptions s " +
+            " JOIN users u ON u.id = s.target_id " +
+            " JOIN articles a ON a.author_id = s.target_id " +
+            " WHERE s.subscriber_id = :userId AND a.is_published = true AND a.review_for_article_id IS NULL " +
+            " AND a.deleted_at IS NULL AND (a.timeline_pull OR u.follower_count >= :fanOutLimit) %2$s " +
+            " ORDER BY a.created_at DESC, a.id DESC LIMIT :limit) " +
+            "ORDER BY created_at DESC, article_id DESC LIMIT :limit";
+
+    private static final String TIMELINE_AFTER = "AND (created_at, article_id) < (:createdAt, :articleId)";
+    private static final String ARTICLES_AFTER = "AND (a.created_at, a.id) < (:createdAt, :articleId)";
+
+    // Записи сверх лимита в лентах указанных пользователей: все, что старше max-entries-й записи
+    // (граница находится по индексу idx_home_timeline_page, лента целиком не сортируется)
+    private static final String TRIM_SQL =
+            "DELETE FROM home_timeline h USING (" +
+            "    SELECT u.user_id, b.created_at, b.article_id " +
+            "    FROM unnest(CAST(:userIds AS bigint[])) AS u(user_id) " +
+            "    CROSS JOIN LATERAL (" +
+            "        SELECT created_at, article_id FROM home_timeline " +
+            "        WHERE user_id = u.user_id " +
+            "        ORDER BY created_at DESC, article_id DESC OFFSET :lastPosition LIMIT 1" +
+            "    ) b" +
+            ") boundary " +
+            "WHERE h.user_id = boundary.user_id " +
+            "AND (h.created_at, h.article_id) < (boundary.created_at, boundary.article_id)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final int fanOutLimit;
+    private final int maxEntries;
+
+    public TimelineService(NamedParameterJdbcTemplate jdbcTemplate,
+                           @Value("${app.timeline.fan-out-limit:10000}") int fanOutLimit,
+                           @Value("${app.timeline.max-entries:200}") int maxEntries) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fanOutLimit = fanOutLimit;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Позиция статьи в ленте подписок
+     */
+    public record Entry(Long articleId, LocalDateTime createdAt) {
+    }
+
+    /**
+     * Страница ленты подписок после позиции (createdAt, articleId); null - первая страница
+     */
+    public List<Entry> findPage(Long userId, LocalDateTime createdAt, Long articleId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("fanOutLimit", fanOutLimit)
+                .addValue("limit", limit);
+        String sql;
+        if (createdAt == null) {
+            sql = String.format(PAGE_SQL, "", "");
+        } else {
+            sql = String.format(PAGE_SQL, TIMELINE_AFTER, ARTICLES_AFTER);
+            params.addValue("createdAt", createdAt).addValue("articleId", articleId);
+        }
+        return jdbcTemplate.query(sql, params, (rs, rowNum) -> new Entry(
+                rs.getLong("article_id"), rs.getTimestamp("created_at").toLocalDateTime()));
+    }
+
+    /**
+     * Привести ленты подписчиков в соответствие с видимостью статьи (публикация, снятие с публикации)
+     * после фиксации текущей транзакции
+     */
+    public void syncAfterCommit(Long articleId) {
+        AfterCommit.run(() -> {
+            try {
+                MapSqlParameterSource params = new MapSqlParameterSource()
+                        .addValue("articleId", articleId)
+                        .addValue("fanOutLimit", fanOutLimit);
+                jdbcTemplate.update(RETRACT_SQL, params);
+                jdbcTemplate.update(MARK_PULL_SQL, params);
+                List<Long> subscribers = jdbcTemplate.queryForList(FAN_OUT_SQL, params, Long.class);
+                trim(subscribers);
+            } catch (RuntimeException e) {
+                System.err.println("Ошибка обновления лент подписчиков для статьи " + articleId + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Убрать удаленные статьи из всех лент после фиксации текущей транзакции
+     */
+    public void removeAfterCommit(Collection<Long> articleIds) {
+        if (articleIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(articleIds);
+        AfterCommit.run(() -> jdbcTemplate.update(REMOVE_ARTICLES_SQL,
+                new MapSqlParameterSource("articleIds", ids)));
+    }
+
+    /**
+     * Подписка: статьи автора добавляются в ленту подписчика (в текущей транзакции).
+     * Статьи крупных авторов подмешиваются при чтении и не копируются.
+     */
+    public void addAuthor(Long userId, Long authorId, int authorFollowers) {
+        if (authorFollowers >= fanOutLimit) {
+            return;
+        }
+        int added = jdbcTemplate.update(BACKFILL_SQL, new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("authorId", authorId)
+                .addValue("limit", maxEntries));
+        if (added > 0) {
+            trim(List.of(userId));
+        }
+    }
+
+    /**
+     * Отписка: статьи автора убираются из ленты подписчика (в текущей транзакции)
+     */
+    public void removeAuthor(Long userId, Long authorId) {
+        jdbcTemplate.update(REMOVE_AUTHOR_SQL, new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("authorId", authorId));
+    }
+
+    // Обрезка лент пользователей до app.timeline.max-entries записей
+    private void trim(List<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(TRIM_SQL, new MapSqlParameterSource()
+                .addValue("userIds", userIds.toArray(new Long[0]))
+                .addValue("lastPosition", maxEntries - 1));
+    }
+}
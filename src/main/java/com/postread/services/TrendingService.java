@@ -0,0 +1,536 @@
+package com.postread.services;
+
+import com.postread.data.Article;
+import com.postread.data.ReactionType;
+import com.postread.dto.ArticleFeedPage;
+import com.postread.dto.ArticleSimpleDTO;
+import com.postread.dto.UserSimpleDTO;
+import com.postread.repositories.ArticleRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Рейтинг статей "в тренде": счет из просмотров, реакций, комментариев, закладок и рецензий,
+ * который экспоненциально затухает со временем.
+ *
+ * Используется прямое затухание: вклад события весом w в момент t хранится как
+ * w * e^(λ(t - t0)) от общей опорной точки t0. Порядок статей от текущего времени не зависит,
+ * поэтому счет меняется только при событиях и ничего не пересчитывается по таймеру.
+ * Рейтинг - skip-list в памяти, ограниченный по размеру; карточки статей тоже в памяти,
+ * так что ?sort=trending отдается без запросов к articles. Счет периодически сохраняется
+ * в article_trending и читается оттуда при старте.
+ *
+ * Закладка и реакция дают счет один раз на пару (пользователь, статья): учтенные пары
+ * хранятся в trending_engagements, поэтому снятие и повторная постановка рейтинг не накручивают.
+ */
+@Service
+public class TrendingService {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 50;
+
+    private static final double VIEW_WEIGHT = 1.0;
+    private static final double COMMENT_WEIGHT = 4.0;
+    private static final double BOOKMARK_WEIGHT = 5.0;
+    private static final double REVIEW_WEIGHT = 8.0;
+
+    // Вес реакции по ReactionType.category
+    private static final Map<String, Double> REACTION_WEIGHTS = Map.of(
+            "positive", 3.0,
+            "neutral", 2.0,
+            "negative", 1.0);
+
+    // Статьи, чей текущий счет затух ниже порога, выбывают из рейтинга
+    private static final double MIN_SCORE = 0.01;
+
+    // Опорная точка переносится раньше, чем e^(λ(t - t0)) приблизится к переполнению double
+    private static final double MAX_EXPONENT = 50.0;
+
+    private static final String LOAD_SQL =
+            "SELECT CAST(article_id AS BIGINT) AS article_id, score, " +
+            "EXTRACT(EPOCH FROM (now() - scored_at)) AS age_seconds FROM article_trending";
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO article_trending (article_id, score, scored_at) " +
+            "SELECT id, ?, now() FROM articles WHERE id = ? " +
+            "ON CONFLICT (article_id) DO UPDATE SET score = EXCLUDED.score, scored_at = EXCLUDED.scored_at";
+
+    private static final String DELETE_SQL = "DELETE FROM article_trending WHERE article_id = ?";
+
+    private static final int BOOKMARK_ENGAGEMENT = 1;
+    private static final int REACTION_ENGAGEMENT = 2;
+
+    // Первая закладка или реакция пользователя на статью; для повторных строка уже есть
+    private static final String ENGAGEMENT_SQL =
+            "INSERT INTO trending_engagements (user_id, article_id, kind) VALUES (?, ?, ?) ON CONFLICT DO NOTHING";
+
+    private static final String PRUNE_ENGAGEMENTS_SQL =
+            "DELETE FROM trending_engagements WHERE created_at < now() - make_interval(days => ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ArticleRepository articleRepository;
+    private final Clock clock;
+
+    // Скорость затухания, 1/мс
+    private final double lambda;
+    private final int maxTracked;
+    private final int topK;
+    private final int engagementRetentionDays;
+
+    // Изменения - под монитором this; рейтинг и карточки читаются без блокировок
+    private final Map<Long, Double> scores = new HashMap<>();
+    // Рейтинг и его опорная точка меняются вместе при переносе опорной точки
+    private volatile Frame frame;
+    private final Map<Long, ArticleSimpleDTO> cards = new ConcurrentHashMap<>();
+    // Статьи, которые не показываются в рейтинге (черновики, рецензии): для них карточка не загружается
+    private final Set<Long> excluded = ConcurrentHashMap.newKeySet();
+    private final Set<Long> dirty = new HashSet<>();
+    private final Set<Long> removed = new HashSet<>();
+
+    @Autowired
+    public TrendingService(JdbcTemplate jdbcTemplate,
+                           ArticleRepository articleRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.trending.half-life-hours:24}") double halfLifeHours,
+                           @Value("${app.trending.max-tracked:5000}") int maxTracked,
+                           @Value("${app.trending.top-k:200}") int topK,
+                           @Value("${app.trending.engagement-retention-days:30}") int engagementRetentionDays) {
+        this(jdbcTemplate, articleRepository, meterRegistry, halfLifeHours, maxTracked, topK,
+                engagementRetentionDays, Clock.systemUTC());
+    }
+
+    TrendingService(JdbcTemplate jdbcTemplate, ArticleRepository articleRepository, MeterRegistry meterRegistry,
+                    double halfLifeHours, int maxTracked, int topK, int engagementRetentionDays, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.articleRepository = articleRepository;
+        this.clock = clock;
+        this.lambda = Math.log(2) / (halfLifeHours * 3_600_000d);
+        this.maxTracked = maxTracked;
+        this.topK = topK;
+        this.engagementRetentionDays = engagementRetentionDays;
+        this.frame = new Frame(clock.millis(), new ConcurrentSkipListSet<>());
+        Gauge.builder("postread.trending.tracked", this, service -> service.frame.ranking().size())
+                .description("Статьи в рейтинге \"в тренде\"")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Загрузка сохраненного рейтинга при старте приложения
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        List<Object[]> rows = jdbcTemplate.query(LOAD_SQL, (rs, rowNum) -> new Object[]{
+                rs.getLong("article_id"), rs.getDouble("score"), rs.getDouble("age_seconds")});
+
+        synchronized (this) {
+            long now = clock.millis();
+            for (Object[] row : rows) {
+                double current = (Double) row[1] * Math.exp(-lambda * (Double) row[2] * 1000);
+                if (current >= MIN_SCORE) {
+                    // Переводим текущее значение в систему отсчета от опорной точки
+                    addScore((Long) row[0], current * Math.exp(lambda * (now - frame.epochMillis())));
+                }
+            }
+            dirty.clear();
+            trim();
+        }
+        loadMissingCards();
+        System.out.println("Рейтинг \"в тренде\" загружен: статей " + frame.ranking().size());
+    }
+
+    /**
+     * Страница рейтинга. Курсор - счет и id последней показанной статьи и число уже показанных статей:
+     * следующая страница начинается сразу после этой позиции, даже если рейтинг между запросами сдвинулся.
+     */
+    public ArticleFeedPage getTrendingFeed(String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        FeedCursor position = decodeCursor(cursor);
+
+        Frame current = frame;
+        NavigableSet<Ranked> ranking = current.ranking();
+        int shown = 0;
+        if (position != null) {
+            Ranked after = new Ranked(position.scoreAt(current.epochMillis(), lambda), position.articleId());
+            ranking = ranking.tailSet(after, false);
+            shown = position.shown();
+        }
+
+        List<ArticleSimpleDTO> items = new ArrayList<>();
+        Ranked last = null;
+        boolean hasMore = false;
+        for (Ranked ranked : ranking) {
+            if (shown + items.size() >= topK) {
+                break;
+            }
+            ArticleSimpleDTO card = cards.get(ranked.articleId());
+            if (card == null) {
+                // Карточка еще не загружена или статья в рейтинге не показывается
+                continue;
+            }
+            if (items.size() == pageSize) {
+                hasMore = true;
+                break;
+            }
+            items.add(copy(card));
+            last = ranked;
+        }
+
+        String nextCursor = hasMore
+                ? encodeCursor(new FeedCursor(current.epochMillis(), last.score(), last.articleId(), shown + items.size()))
+                : null;
+        return new ArticleFeedPage(items, nextCursor, hasMore);
+    }
+
+    /**
+     * Просмотры, только что записанные ViewCountBuffer
+     */
+    public void recordViews(Long articleId, long views) {
+        add(articleId, VIEW_WEIGHT * views);
+        ArticleSimpleDTO card = cards.get(articleId);
+        if (card != null) {
+            card.setViewCount(card.getViewCount() + (int) views);
+        }
+    }
+
+    /**
+     * Новая реакция пользователя; учитывается только первая реакция на статью.
+     * Отметка пишется в текущей транзакции, счет меняется после ее фиксации.
+     */
+    public void recordReactionAfterCommit(Long userId, Long articleId, ReactionType type) {
+        if (firstEngagement(userId, articleId, REACTION_ENGAGEMENT)) {
+            double weight = REACTION_WEIGHTS.getOrDefault(type.getCategory(), 1.0);
+            AfterCommit.run(() -> add(articleId, weight));
+        }
+    }
+
+    public void recordCommentAfterCommit(Long articleId) {
+        AfterCommit.run(() -> add(articleId, COMMENT_WEIGHT));
+    }
+
+    /**
+     * Статья добавлена в закладки; учитывается только первая закладка пользователя на статью
+     */
+    public void recordBookmarkAfterCommit(Long userId, Long articleId) {
+        if (firstEngagement(userId, articleId, BOOKMARK_ENGAGEMENT)) {
+            AfterCommit.run(() -> add(articleId, BOOKMARK_WEIGHT));
+        }
+    }
+
+    /**
+     * Новая рецензия поднимает оригинальную статью
+     */
+    public void recordReviewAfterCommit(Long originalArticleId) {
+        AfterCommit.run(() -> add(originalArticleId, REVIEW_WEIGHT));
+    }
+
+    /**
+     * Статья изменилась (текст, публикация): карточка будет перечитана, счет сохраняется
+     */
+    public void refreshAfterCommit(Long articleId) {
+        AfterCommit.run(() -> {
+            cards.remove(articleId);
+            excluded.remove(articleId);
+        });
+    }
+
+    /**
+     * Удалить статьи из рейтинга после фиксации текущей транзакции
+     */
+    public void removeAfterCommit(Collection<Long> articleIds) {
+        List<Long> ids = List.copyOf(articleIds);
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                ids.forEach(this::forget);
+            }
+        });
+    }
+
+    /**
+     * Загрузка карточек для верхней части рейтинга одним запросом
+     */
+    @Scheduled(fixedDelayString = "${app.trending.card-refresh-ms:10000}")
+    public void loadMissingCards() {
+        List<Long> missing = new ArrayList<>();
+        int position = 0;
+        for (Ranked ranked : frame.ranking()) {
+            if (position >= topK) {
+                break;
+            }
+            Long articleId = ranked.articleId();
+            if (excluded.contains(articleId)) {
+                continue;
+            }
+            if (!cards.containsKey(articleId)) {
+                missing.add(articleId);
+            }
+            position++;
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        Set<Long> found = new HashSet<>();
+        for (Article article : articleRepository.findPublishedOriginalsByIds(missing)) {
+            cards.put(article.getId(), toCard(article));
+            found.add(article.getId());
+        }
+        for (Long articleId : missing) {
+            if (!found.contains(articleId)) {
+                excluded.add(articleId);
+            }
+        }
+    }
+
+    /**
+     * Сохранение изменившегося счета в article_trending и отсев затухших статей
+     */
+    @Scheduled(fixedDelayString = "${app.trending.checkpoint-interval-ms:60000}")
+    public void checkpoint() {
+        List<Object[]> upserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+
+        synchronized (this) {
+            long now = clock.millis();
+            rebaseIfNeeded(now);
+            double decay = Math.exp(-lambda * (now - frame.epochMillis()));
+
+            NavigableSet<Ranked> ranking = frame.ranking();
+            while (!ranking.isEmpty() && ranking.last().score() * decay < MIN_SCORE) {
+                forget(ranking.last().articleId());
+            }
+
+            for (Long articleId : dirty) {
+                upserts.add(new Object[]{scores.get(articleId) * decay, articleId});
+            }
+            for (Long articleId : removed) {
+                deletes.add(new Object[]{articleId});
+            }
+            dirty.clear();
+            removed.clear();
+
+            // Карточки, загруженные параллельно с удалением статьи из рейтинга
+            cards.keySet().retainAll(scores.keySet());
+            excluded.retainAll(scores.keySet());
+        }
+
+        try {
+            if (!deletes.isEmpty()) {
+                jdbcTemplate.batchUpdate(DELETE_SQL, deletes);
+            }
+            if (!upserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, upserts);
+            }
+        } catch (RuntimeException e) {
+            // Повторим при следующем сохранении
+            synchronized (this) {
+                for (Object[] row : upserts) {
+                    Long articleId = (Long) row[1];
+                    if (scores.containsKey(articleId)) {
+                        dirty.add(articleId);
+                    }
+                }
+                for (Object[] row : deletes) {
+                    Long articleId = (Long) row[0];
+                    if (!scores.containsKey(articleId)) {
+                        removed.add(articleId);
+                    }
+                }
+            }
+            System.err.println("Ошибка сохранения рейтинга \"в тренде\": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void checkpointOnShutdown() {
+        checkpoint();
+    }
+
+    /**
+     * Удаление отметок об учтенных закладках и реакциях старше app.trending.engagement-retention-days:
+     * их вклад в счет к этому времени давно затух
+     */
+    @Scheduled(cron = "${app.trending.engagement-prune-cron:0 45 3 * * *}")
+    public void pruneEngagements() {
+        try {
+            int deleted = jdbcTemplate.update(PRUNE_ENGAGEMENTS_SQL, engagementRetentionDays);
+            if (deleted > 0) {
+                System.out.println("Рейтинг \"в тренде\": удалено старых отметок " + deleted);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Ошибка очистки отметок рейтинга \"в тренде\": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Текущий (затухший) счет статьи; 0 - статьи нет в рейтинге
+     */
+    synchronized double currentScore(Long articleId) {
+        Double score = scores.get(articleId);
+        return score != null ? score * Math.exp(-lambda * (clock.millis() - frame.epochMillis())) : 0;
+    }
+
+    private boolean firstEngagement(Long userId, Long articleId, int kind) {
+        if (userId == null || articleId == null) {
+            return false;
+        }
+        return jdbcTemplate.update(ENGAGEMENT_SQL, userId, articleId, kind) > 0;
+    }
+
+    private synchronized void add(Long articleId, double weight) {
+        if (articleId == null || weight <= 0) {
+            return;
+        }
+        addScore(articleId, weight * Math.exp(lambda * (clock.millis() - frame.epochMillis())));
+        trim();
+    }
+
+    // Вызывается под монитором this
+    private void addScore(Long articleId, double increment) {
+        NavigableSet<Ranked> ranking = frame.ranking();
+        Double current = scores.get(articleId);
+        if (current != null) {
+            ranking.remove(new Ranked(current, articleId));
+        }
+        double updated = (current != null ? current : 0) + increment;
+        scores.put(articleId, updated);
+        ranking.add(new Ranked(updated, articleId));
+        dirty.add(articleId);
+        removed.remove(articleId);
+    }
+
+    // Вызывается под монитором this: вытесняем статьи с наименьшим счетом
+    private void trim() {
+        while (scores.size() > maxTracked) {
+            Ranked last = frame.ranking().pollLast();
+            if (last == null) {
+                break;
+            }
+            forget(last.articleId());
+        }
+    }
+
+    // Вызывается под монитором this
+    private void forget(Long articleId) {
+        Double score = scores.remove(articleId);
+        if (score != null) {
+            frame.ranking().remove(new Ranked(score, articleId));
+        }
+        cards.remove(articleId);
+        excluded.remove(articleId);
+        dirty.remove(articleId);
+        removed.add(articleId);
+    }
+
+    // Вызывается под монитором this: пересчет всех значений к новой опорной точке, порядок не меняется
+    private void rebaseIfNeeded(long now) {
+        if (lambda * (now - frame.epochMillis()) < MAX_EXPONENT) {
+            return;
+        }
+        double factor = Math.exp(-lambda * (now - frame.epochMillis()));
+        ConcurrentSkipListSet<Ranked> rebased = new ConcurrentSkipListSet<>();
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            double value = entry.getValue() * factor;
+            entry.setValue(value);
+            rebased.add(new Ranked(value, entry.getKey()));
+        }
+        frame = new Frame(now, rebased);
+    }
+
+    private ArticleSimpleDTO toCard(Article article) {
+        ArticleSimpleDTO card = new ArticleSimpleDTO();
+        card.setId(article.getId());
+        card.setTitle(article.getTitle());
+        card.setShortDescription(article.getShortDescription());
+        card.setPublished(article.isPublished());
+        card.setViewCount(article.getViewCount());
+        card.setCreatedAt(article.getCreatedAt());
+
+        if (article.getAuthor() != null) {
+            UserSimpleDTO authorDTO = new UserSimpleDTO();
+            authorDTO.setId(article.getAuthor().getId());
+            authorDTO.setName(article.getAuthor().getName());
+            authorDTO.setIcon(article.getAuthor().getIcon());
+            card.setAuthor(authorDTO);
+        }
+        return card;
+    }
+
+    private ArticleSimpleDTO copy(ArticleSimpleDTO card) {
+        ArticleSimpleDTO dto = new ArticleSimpleDTO();
+        dto.setId(card.getId());
+        dto.setTitle(card.getTitle());
+        dto.setShortDescription(card.getShortDescription());
+        dto.setPublished(card.isPublished());
+        dto.setViewCount(card.getViewCount());
+        dto.setCreatedAt(card.getCreatedAt());
+        dto.setAuthor(card.getAuthor());
+        return dto;
+    }
+
+    private String encodeCursor(FeedCursor cursor) {
+        String raw = "t" + cursor.epochMillis() + ":" + cursor.score() + ":" + cursor.articleId() + ":" + cursor.shown();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private FeedCursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!raw.startsWith("t")) {
+                throw new IllegalArgumentException();
+            }
+            String[] parts = raw.substring(1).split(":");
+            if (parts.length != 4) {
+                throw new IllegalArgumentException();
+            }
+            double score = Double.parseDouble(parts[1]);
+            if (!Double.isFinite(score)) {
+                throw new IllegalArgumentException();
+            }
+            return new FeedCursor(Long.parseLong(parts[0]), score, Long.parseLong(parts[2]),
+                    Math.max(0, Integer.parseInt(parts[3])));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Некорректный курсор ленты");
+        }
+    }
+
+    // Рейтинг в системе отсчета от опорной точки epochMillis
+    private record Frame(long epochMillis, ConcurrentSkipListSet<Ranked> ranking) {
+    }
+
+    // Позиция в рейтинге: счет в системе отсчета от опорной точки epochMillis
+    private record FeedCursor(long epochMillis, double score, long articleId, int shown) {
+
+        // Счет в системе отсчета от другой опорной точки (после ее переноса)
+        double scoreAt(long currentEpochMillis, double lambda) {
+            return currentEpochMillis == epochMillis
+                    ? score
+                    : score * Math.exp(-lambda * (currentEpochMillis - epochMillis));
+        }
+    }
+
+    private record Ranked(double score, long articleId) implements Comparable<Ranked> {
+        // По убыванию счета, при равенстве - более новые id выше
+        @Override
+        public int compareTo(Ranked other) {
+            int byScore = Double.compare(other.score, score);
+            return byScore != 0 ? byScore : Long.compare(other.articleId, articleId);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.postread.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Буфер просмотров статей: просмотры копятся в памяти и периодически
+ * сбрасываются в БД пакетом UPDATE вместо построчной блокировки на каждый просмотр
+ */
+@Component
+public class ViewCountBuffer {
+
+    private static final String FLUSH_SQL = "UPDATE articles SET view_count = view_count + ? WHERE id = ?";
+
+    // Счетчик закрыт сбросом и удаляется из буфера: писатель, увидевший его, создает новый
+    private static final long SEALED = -1L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ArticleCache articleCache;
+    private final TrendingService trendingService;
+    private final Map<Long, AtomicLong> pending = new ConcurrentHashMap<>();
+
+    public ViewCountBuffer(JdbcTemplate jdbcTemplate, ArticleCache articleCache,
+                           TrendingService trendingService, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.articleCache = articleCache;
+        this.trendingService = trendingService;
+        Gauge.builder("postread.views.pending", this, ViewCountBuffer::getPendingTotal)
+                .description("Просмотры, еще не записанные в БД")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Учесть просмотр статьи
+     */
+    public void increment(Long articleId) {
+        add(articleId, 1L);
+    }
+
+    private void add(Long articleId, long views) {
+        while (true) {
+            AtomicLong counter = pending.computeIfAbsent(articleId, id -> new AtomicLong());
+            long current = counter.get();
+            if (current == SEALED) {
+                // Сброс как раз освобождает этот счетчик - помогаем удалить и берем новый
+                pending.remove(articleId, counter);
+                continue;
+            }
+            if (counter.compareAndSet(current, current + views)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Несброшенные просмотры статьи (добавляются к значению из БД при чтении)
+     */
+    public long getPending(Long articleId) {
+        AtomicLong counter = pending.get(articleId);
+        return counter != null ? Math.max(counter.get(), 0L) : 0L;
+    }
+
+    /**
+     * Общее количество несброшенных просмотров
+     */
+    public long getPendingTotal() {
+        long total = 0;
+        for (AtomicLong counter : pending.values()) {
+            total += Math.max(counter.get(), 0L);
+        }
+        return total;
+    }
+
+    /**
+     * Сброс накопленных просмотров в БД одним пакетом.
+     * Счетчик забирается атомарно (getAndSet), а освобождается только закрытием через CAS 0 -> SEALED,
+     * поэтому просмотр, пришедший во время сброса, попадает либо в этот пакет, либо в следующий.
+     */
+    @Scheduled(fixedDelayString = "${app.views.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        List<Object[]> batch = new ArrayList<>();
+        for (Map.Entry<Long, AtomicLong> entry : pending.entrySet()) {
+            AtomicLong counter = entry.getValue();
+            if (counter.get() == SEALED) {
+                pending.remove(entry.getKey(), counter);
+                continue;
+            }
+            long delta = counter.getAndSet(0L);
+            if (delta == 0) {
+                // Статью не смотрели с прошлого сброса - освобождаем запись
+                if (counter.compareAndSet(0L, SEALED)) {
+                    pending.remove(entry.getKey(), counter);
+                }
+                continue;
+            }
+            batch.add(new Object[]{delta, entry.getKey()});
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, batch);
+            // Просмотры теперь в БД - закэшированные DTO перечитаются с новым view_count
+            for (Object[] row : batch) {
+                articleCache.invalidate((Long) row[1]);
+                trendingService.recordViews((Long) row[1], (Long) row[0]);
+            }
+        } catch (RuntimeException e) {
+            // Возвращаем просмотры в буфер, чтобы не потерять их до следующей попытки
+            for (Object[] row : batch) {
+                add((Long) row[1], (Long) row[0]);
+            }
+            System.err.println("Ошибка при сбросе просмотров: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,8 @@
+-- Уменьшенные копии изображений: строка с original_file_name указывает на исходный файл,
+-- width - ширина варианта в пикселях (для исходника - его собственная ширина)
+ALTER TABLE multimedia
+    ADD COLUMN original_file_name VARCHAR(255),
+    ADD COLUMN width INTEGER,
+    ADD COLUMN height INTEGER;
+
+CREATE INDEX idx_multimedia_original ON multimedia(original_file_name);
@@ -0,0 +1,35 @@
+-- Материализованный путь комментария: id предков и самого комментария, дополненные нулями
+-- до 10 знаков и разделенные точкой. Сортировка по path в пределах ветки (root_id)
+-- дает обход дерева в глубину, ответы - в порядке добавления.
+-- Коллация "C" нужна для побайтового сравнения ('.' < '0').
+ALTER TABLE comments
+    ADD COLUMN root_id INTEGER,
+    ADD COLUMN path TEXT COLLATE "C",
+    ADD COLUMN reply_count INTEGER NOT NULL DEFAULT 0;
+
+WITH RECURSIVE tree AS (
+    SELECT id, id AS root_id, lpad(id::text, 10, '0') AS path
+    FROM comments
+    WHERE reference_id IS NULL
+    UNION ALL
+    SELECT c.id, t.root_id, t.path || '.' || lpad(c.id::text, 10, '0')
+    FROM comments c
+    JOIN tree t ON c.reference_id = t.id
+)
+UPDATE comments c
+SET root_id = t.root_id,
+    path = t.path
+FROM tree t
+WHERE c.id = t.id;
+
+-- Количество ответов во всей ветке хранится у корневого комментария
+UPDATE comments r
+SET reply_count = (SELECT COUNT(*) FROM comments c WHERE c.root_id = r.id AND c.id <> r.id)
+WHERE r.reference_id IS NULL;
+
+-- Страницы корневых комментариев статьи (новые сверху)
+CREATE INDEX idx_comments_roots ON comments(article_id, created_at DESC, id DESC)
+    WHERE reference_id IS NULL;
+
+-- Ответы ветки в порядке обхода
+CREATE INDEX idx_comments_thread ON comments(root_id, path);
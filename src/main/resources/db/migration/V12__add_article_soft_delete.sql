@@ -0,0 +1,5 @@
+-- Мягкое удаление статей: статья скрывается сразу, а связанные данные
+-- и саму строку удаляет фоновая очистка (ArticleDeletionService)
+ALTER TABLE articles ADD COLUMN deleted_at TIMESTAMP;
+
+CREATE INDEX idx_articles_deleted ON articles(deleted_at) WHERE deleted_at IS NOT NULL;
@@ -0,0 +1,11 @@
+-- Хэш содержимого блока (тип + текст) для сравнения блоков при сохранении из редактора
+ALTER TABLE article_blocks ADD COLUMN content_hash VARCHAR(64);
+
+UPDATE article_blocks
+SET content_hash = encode(sha256(convert_to(block_type || E'\n' || coalesce(content, ''), 'UTF8')), 'hex');
+
+-- Уникальность порядка проверяется при фиксации транзакции:
+-- при перестановке блоков промежуточные состояния могут совпадать
+ALTER TABLE article_blocks DROP CONSTRAINT article_blocks_article_id_block_order_key;
+ALTER TABLE article_blocks ADD CONSTRAINT article_blocks_article_id_block_order_key
+    UNIQUE (article_id, block_order) DEFERRABLE INITIALLY DEFERRED;
@@ -0,0 +1,27 @@
+-- Идентификаторы выдаются Hibernate из последовательностей блоками по 50 (pooled):
+-- значение последовательности - верхняя граница выделенного диапазона.
+-- Существующие id сохраняются: последовательности serial продолжают счет с текущего значения.
+-- Вставки в обход Hibernate (DEFAULT nextval) тоже остаются корректными -
+-- они занимают верхнее значение своего, никем не используемого диапазона.
+DO $$
+DECLARE
+    t TEXT;
+    seq TEXT;
+    max_id BIGINT;
+    last_val BIGINT;
+BEGIN
+    FOREACH t IN ARRAY ARRAY['users', 'roles', 'articles', 'article_blocks', 'tags', 'reactions',
+                             'bookmarks', 'comments', 'multimedia', 'reviews']
+    LOOP
+        seq := pg_get_serial_sequence(t, 'id');
+
+        -- Подстраховка на случай строк, вставленных с явным id
+        EXECUTE format('SELECT COALESCE(MAX(id), 0) FROM %I', t) INTO max_id;
+        EXECUTE format('SELECT last_value FROM %s', seq) INTO last_val;
+        IF max_id > last_val THEN
+            PERFORM setval(seq, max_id);
+        END IF;
+
+        EXECUTE format('ALTER SEQUENCE %s INCREMENT BY 50', seq);
+    END LOOP;
+END $$;
@@ -0,0 +1,29 @@
+-- Контрольные точки рейтинга "в тренде" (TrendingService): score - значение на момент scored_at,
+-- дальше оно экспоненциально затухает (период полураспада app.trending.half-life-hours)
+CREATE TABLE article_trending (
+    article_id INTEGER PRIMARY KEY REFERENCES articles(id) ON DELETE CASCADE,
+    score DOUBLE PRECISION NOT NULL,
+    scored_at TIMESTAMP NOT NULL
+);
+
+-- Начальный рейтинг по уже накопленным счетчикам статей за последний месяц:
+-- веса событий как в TrendingService, затухание по возрасту статьи с периодом 24 часа
+INSERT INTO article_trending (article_id, score, scored_at)
+SELECT s.id, s.score, now()
+FROM (
+    SELECT a.id,
+           (COALESCE(a.view_count, 0) * 1.0
+            + COALESCE(rc.counts[1] + rc.counts[3] + rc.counts[4] + rc.counts[8] + rc.counts[10] + rc.counts[12], 0) * 3.0
+            + COALESCE(rc.counts[7] + rc.counts[9], 0) * 2.0
+            + COALESCE(rc.counts[2] + rc.counts[5] + rc.counts[6] + rc.counts[11], 0) * 1.0
+            + (SELECT COUNT(*) FROM comments c WHERE c.article_id = a.id) * 4.0
+            + (SELECT COUNT(*) FROM bookmarks b WHERE b.article_id = a.id) * 5.0
+            + (SELECT COUNT(*) FROM articles r WHERE r.review_for_article_id = a.id
+                                                AND r.is_published AND r.deleted_at IS NULL) * 8.0)
+           * exp(-ln(2) * EXTRACT(EPOCH FROM (now() - a.created_at)) / 86400) AS score
+    FROM articles a
+    LEFT JOIN reaction_counters rc ON rc.article_id = a.id
+    WHERE a.is_published AND a.review_for_article_id IS NULL AND a.deleted_at IS NULL
+      AND a.created_at > now() - interval '30 days'
+) s
+WHERE s.score > 0.01;
@@ -0,0 +1,39 @@
+-- Количество подписчиков автора: по нему TimelineService решает, раздавать ли
+-- новые статьи по лентам подписчиков или подмешивать их при чтении
+ALTER TABLE users ADD COLUMN follower_count INTEGER NOT NULL DEFAULT 0;
+
+UPDATE users u SET follower_count = s.cnt
+FROM (SELECT target_id, COUNT(*) AS cnt FROM subscriptions GROUP BY target_id) s
+WHERE s.target_id = u.id;
+
+-- Лента подписок: статьи авторов, на которых подписан пользователь, раздаются при публикации.
+-- created_at - дата статьи, по (created_at, article_id) идет keyset-пагинация как в общей ленте
+CREATE TABLE home_timeline (
+    user_id INTEGER NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    article_id INTEGER NOT NULL REFERENCES articles(id) ON DELETE CASCADE,
+    author_id INTEGER NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (user_id, article_id)
+);
+
+CREATE INDEX idx_home_timeline_page ON home_timeline (user_id, created_at DESC, article_id DESC);
+CREATE INDEX idx_home_timeline_article ON home_timeline (article_id);
+
+-- Статьи авторов с большим числом подписчиков читаются из articles при открытии ленты
+CREATE INDEX idx_articles_author_feed
+    ON articles (author_id, created_at DESC, id DESC)
+    WHERE is_published = true AND review_for_article_id IS NULL;
+
+-- Начальное заполнение: последние 200 статей каждого автора для его подписчиков
+-- (порог и размер как app.timeline.fan-out-limit и app.timeline.max-entries по умолчанию)
+INSERT INTO home_timeline (user_id, article_id, author_id, created_at)
+SELECT s.subscriber_id, a.id, a.author_id, a.created_at
+FROM subscriptions s
+JOIN users u ON u.id = s.target_id AND u.follower_count < 10000
+CROSS JOIN LATERAL (
+    SELECT id, author_id, created_at
+    FROM articles
+    WHERE author_id = s.target_id AND is_published = true AND review_for_article_id IS NULL
+    ORDER BY created_at DESC, id DESC
+    LIMIT 200
+) a;
@@ -0,0 +1,3 @@
+-- Уникальное имя тега: TagService создает недостающие теги пакетом через INSERT ... ON CONFLICT DO NOTHING.
+-- Дублей по имени быть не может - slug строится из имени и уже уникален.
+CREATE UNIQUE INDEX idx_tags_name ON tags(name);
@@ -0,0 +1,22 @@
+-- Закладки и реакции, уже учтенные в рейтинге "в тренде" (TrendingService): счет дает только
+-- первая закладка или реакция пользователя на статью, повторные после снятия не учитываются.
+-- kind: 1 - закладка, 2 - реакция. Старые записи удаляются через app.trending.engagement-retention-days
+CREATE TABLE trending_engagements (
+    user_id INTEGER NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    article_id INTEGER NOT NULL REFERENCES articles(id) ON DELETE CASCADE,
+    kind SMALLINT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT now(),
+    PRIMARY KEY (user_id, article_id, kind)
+);
+
+CREATE INDEX idx_trending_engagements_article ON trending_engagements (article_id);
+CREATE INDEX idx_trending_engagements_created ON trending_engagements (created_at);
+
+-- Существующие закладки и реакции уже вошли в начальный рейтинг (V16)
+INSERT INTO trending_engagements (user_id, article_id, kind)
+SELECT DISTINCT user_id, article_id, 1 FROM bookmarks WHERE user_id IS NOT NULL AND article_id IS NOT NULL
+ON CONFLICT DO NOTHING;
+
+INSERT INTO trending_engagements (user_id, article_id, kind)
+SELECT DISTINCT user_id, article_id, 2 FROM reactions WHERE user_id IS NOT NULL AND article_id IS NOT NULL
+ON CONFLICT DO NOTHING;
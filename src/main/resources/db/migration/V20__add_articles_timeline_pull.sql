@@ -0,0 +1,10 @@
+-- Статья не раздавалась по лентам подписчиков, потому что при публикации у автора было
+-- не меньше app.timeline.fan-out-limit подписчиков: такие статьи подмешиваются в ленту при чтении
+-- и после того, как число подписчиков автора опустится ниже порога
+ALTER TABLE articles ADD COLUMN timeline_pull BOOLEAN NOT NULL DEFAULT false;
+
+-- Порог как app.timeline.fan-out-limit по умолчанию
+UPDATE articles a SET timeline_pull = true
+FROM users u
+WHERE u.id = a.author_id AND u.follower_count >= 10000
+  AND a.is_published = true AND a.review_for_article_id IS NULL;
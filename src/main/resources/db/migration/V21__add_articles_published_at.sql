@@ -0,0 +1,5 @@
+-- Время первой публикации статьи: по нему TagIndex считает теги в тренде
+ALTER TABLE articles ADD COLUMN published_at TIMESTAMP;
+
+-- Для уже опубликованных статей точное время неизвестно, берем дату создания
+UPDATE articles SET published_at = created_at WHERE is_published = true;
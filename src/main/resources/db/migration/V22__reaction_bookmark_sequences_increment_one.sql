@@ -0,0 +1,16 @@
+-- Реакции и закладки вставляются напрямую SQL (DEFAULT nextval), а не через Hibernate:
+-- с шагом 50 из V14 каждая вставка сжигала 50 id. Возвращаем шаг 1 (allocationSize = 1 в сущностях)
+-- и расширяем id до BIGINT, чтобы частые переключения не исчерпали последовательность.
+DO $$
+DECLARE
+    t TEXT;
+    seq TEXT;
+BEGIN
+    FOREACH t IN ARRAY ARRAY['reactions', 'bookmarks']
+    LOOP
+        seq := pg_get_serial_sequence(t, 'id');
+
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN id TYPE BIGINT', t);
+        EXECUTE format('ALTER SEQUENCE %s AS BIGINT INCREMENT BY 1', seq);
+    END LOOP;
+END $$;
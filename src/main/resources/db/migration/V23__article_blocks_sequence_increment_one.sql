@@ -0,0 +1,3 @@
+-- Блоки статей вставляет ArticleBlockWriter пакетным INSERT (DEFAULT nextval), а не Hibernate:
+-- с шагом 50 из V14 каждый блок сжигал 50 id. Возвращаем шаг 1 (allocationSize = 1 в ArticleBlock).
+ALTER SEQUENCE article_blocks_id_seq INCREMENT BY 1;
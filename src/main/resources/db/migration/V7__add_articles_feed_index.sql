@@ -0,0 +1,4 @@
+-- Индекс для keyset-пагинации ленты: (created_at, id) по опубликованным статьям (не рецензиям)
+CREATE INDEX IF NOT EXISTS idx_articles_feed
+    ON articles (created_at DESC, id DESC)
+    WHERE is_published = true AND review_for_article_id IS NULL;
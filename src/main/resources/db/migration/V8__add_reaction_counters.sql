@@ -0,0 +1,18 @@
+-- Денормализованные счетчики реакций: counts[i] - количество реакций с кодом i (1..12)
+CREATE TABLE reaction_counters (
+    article_id INTEGER PRIMARY KEY,
+    counts INTEGER[] NOT NULL DEFAULT array_fill(0, ARRAY[12]),
+    total INTEGER NOT NULL DEFAULT 0,
+
+    FOREIGN KEY (article_id) REFERENCES articles(id) ON DELETE CASCADE
+);
+
+-- Заполняем счетчики по уже существующим реакциям
+INSERT INTO reaction_counters (article_id, counts, total)
+SELECT a.id,
+       ARRAY(SELECT COUNT(r.id)::int
+             FROM generate_series(1, 12) AS g(code)
+             LEFT JOIN reactions r ON r.article_id = a.id AND r.type = g.code
+             ORDER BY g.code),
+       (SELECT COUNT(*) FROM reactions r WHERE r.article_id = a.id)
+FROM articles a;
@@ -0,0 +1,17 @@
+-- Полнотекстовый поиск по статьям: взвешенный tsvector (заголовок A, описание B, текстовые блоки C).
+-- Конфигурация russian стеммит кириллицу русским стеммером, а латиницу - английским.
+ALTER TABLE articles ADD COLUMN IF NOT EXISTS search_vector tsvector;
+
+CREATE OR REPLACE FUNCTION article_search_vector(p_article_id BIGINT) RETURNS tsvector AS $$
+    SELECT setweight(to_tsvector('russian', coalesce(a.title, '')), 'A') ||
+           setweight(to_tsvector('russian', coalesce(a.short_description, '')), 'B') ||
+           setweight(to_tsvector('russian', coalesce((SELECT string_agg(b.content, ' ' ORDER BY b.block_order)
+                                                      FROM article_blocks b
+                                                      WHERE b.article_id = a.id AND b.block_type = 'text'), '')), 'C')
+    FROM articles a
+    WHERE a.id = p_article_id
+$$ LANGUAGE sql STABLE;
+
+UPDATE articles SET search_vector = article_search_vector(id);
+
+CREATE INDEX IF NOT EXISTS idx_articles_search_vector ON articles USING GIN (search_vector);
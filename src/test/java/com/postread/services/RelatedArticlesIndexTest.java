@@ -0,0 +1,144 @@
+package com.postread.services;
+
+import com.postread.data.Article;
+import com.postread.data.ArticleBlock;
+import com.postread.data.Tag;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class RelatedArticlesIndexTest {
+
+    private static final String POSTGRES_TEXT =
+            "Индексы в PostgreSQL ускоряют выборку строк по условию. B-tree подходит для сравнений " +
+            "и сортировки, GIN - для полнотекстового поиска и массивов, BRIN - для больших таблиц " +
+            "с естественным порядком данных. Частичный индекс хранит только нужные строки.";
+
+    private static final String PASTRY_TEXT =
+            "Тесто для круассанов раскатывают со сливочным маслом несколько раз, охлаждая между " +
+            "раскатками. Слои масла при выпечке дают пар, и изделие поднимается и становится хрустящим.";
+
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    private RelatedArticlesIndex index;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+        index = new RelatedArticlesIndex(jdbcTemplate, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void signatureIsNullWithoutTagsAndWords() {
+        assertThat(RelatedArticlesIndex.signature(List.of(), null, null, List.of())).isNull();
+        assertThat(RelatedArticlesIndex.signature(List.of(), "", " - ", List.of("<p></p>", "!!!"))).isNull();
+        assertThat(RelatedArticlesIndex.signature(List.of("sql"), null, null, List.of())).isNotNull();
+        assertThat(RelatedArticlesIndex.signature(List.of(), "Индексы", null, List.of())).isNotNull();
+    }
+
+    @Test
+    void identicalSignaturesForIdenticalContent() {
+        int[] first = RelatedArticlesIndex.signature(List.of("sql", "postgres"), "Индексы", "Обзор", List.of(POSTGRES_TEXT));
+        int[] second = RelatedArticlesIndex.signature(List.of("postgres", "sql"), "Индексы", "Обзор", List.of(POSTGRES_TEXT));
+
+        assertThat(second).isEqualTo(first);
+    }
+
+    @Test
+    void identicalArticleRanksFirstAndDisjointIsAbsent() {
+        index(1L, "Индексы в PostgreSQL", "Обзор типов индексов", POSTGRES_TEXT, "sql", "postgres");
+        index(2L, "Индексы в PostgreSQL", "Обзор типов индексов", POSTGRES_TEXT, "sql", "postgres");
+        index(3L, "Когда нужен индекс", "Заметка о выборках",
+                POSTGRES_TEXT.substring(0, POSTGRES_TEXT.length() / 2) + " Еще немного про планировщик.", "sql", "postgres");
+        index(4L, "Круассаны дома", "Слоеное тесто", PASTRY_TEXT, "выпечка");
+
+        List<Long> similar = index.findSimilar(1L, 10);
+
+        assertThat(similar).first().isEqualTo(2L);
+        assertThat(similar).doesNotContain(1L, 4L);
+        assertThat(index.findSimilar(4L, 10)).doesNotContain(1L, 2L, 3L);
+    }
+
+    @Test
+    void articleWithoutTagsAndWordsIsNotIndexed() {
+        index(1L, "Индексы в PostgreSQL", "Обзор", POSTGRES_TEXT, "sql");
+        index(2L, "", "", "<p></p>");
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.findSimilar(2L, 10)).isEmpty();
+        assertThat(index.findSimilar(1L, 10)).doesNotContain(2L);
+    }
+
+    @Test
+    void unpublishedArticleIsRemoved() {
+        index(1L, "Индексы в PostgreSQL", "Обзор", POSTGRES_TEXT, "sql");
+        index(2L, "Индексы в PostgreSQL", "Обзор", POSTGRES_TEXT, "sql");
+        assertThat(index.findSimilar(1L, 10)).containsExactly(2L);
+
+        Article draft = article(2L, "Индексы в PostgreSQL", "Обзор", POSTGRES_TEXT, "sql");
+        draft.setPublished(false);
+        index.updateAfterCommit(draft, null);
+
+        assertThat(index.findSimilar(1L, 10)).isEmpty();
+    }
+
+    @Test
+    void changesDuringRebuildSurviveTheSwap() {
+        index(1L, "Индексы в PostgreSQL", "Обзор", POSTGRES_TEXT, "sql");
+        index(2L, "Индексы в PostgreSQL", "Обзор", POSTGRES_TEXT, "sql");
+
+        // Пока построение читает статьи (в БД их еще нет), статья 3 публикуется, статья 2 удаляется
+        doAnswer(invocation -> {
+            index(3L, "Индексы в PostgreSQL", "Обзор", POSTGRES_TEXT, "sql");
+            index.removeAfterCommit(List.of(2L));
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+        index.rebuild();
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.findSimilar(3L, 10)).isEmpty();
+
+        index(1L, "Индексы в PostgreSQL", "Обзор", POSTGRES_TEXT, "sql");
+        assertThat(index.findSimilar(1L, 10)).containsExactly(3L);
+    }
+
+    private void index(Long id, String title, String description, String text, String... tags) {
+        index.updateAfterCommit(article(id, title, description, text, tags), null);
+    }
+
+    private static Article article(Long id, String title, String description, String text, String... tagNames) {
+        Article article = new Article();
+        article.setId(id);
+        article.setTitle(title);
+        article.setShortDescription(description);
+        article.setPublished(true);
+
+        Set<Tag> tags = new HashSet<>();
+        long tagId = 1;
+        for (String tagName : tagNames) {
+            tags.add(new Tag(tagId++, tagName, tagName));
+        }
+        article.setTags(tags);
+
+        List<ArticleBlock> blocks = new ArrayList<>();
+        ArticleBlock block = new ArticleBlock();
+        block.setType("text");
+        block.setContent(text);
+        block.setOrder(0);
+        blocks.add(block);
+        article.setBlocks(blocks);
+        return article;
+    }
+}
@@ -0,0 +1,103 @@
+package com.postread.services;
+
+import com.postread.data.Tag;
+import com.postread.repositories.TagRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TagAutocompleteTest {
+
+    private final Map<String, Integer> usage = new HashMap<>();
+    private TagRepository tagRepository;
+    private TagAutocomplete autocomplete;
+
+    @BeforeEach
+    void setUp() {
+        tagRepository = mock(TagRepository.class);
+        TagIndex tagIndex = mock(TagIndex.class);
+        when(tagIndex.usageCounts()).thenAnswer(invocation -> new HashMap<>(usage));
+        autocomplete = new TagAutocomplete(tagRepository, tagIndex);
+    }
+
+    @Test
+    void matchesOnlyNamesStartingWithPrefix() {
+        load("ja", "jav", "java", "javascript", "jazz", "kotlin", "ява");
+
+        assertThat(names(autocomplete.complete("jav", 10)))
+                .containsExactlyInAnyOrder("jav", "java", "javascript");
+        assertThat(names(autocomplete.complete("java", 10)))
+                .containsExactlyInAnyOrder("java", "javascript");
+        assertThat(names(autocomplete.complete("ja", 10)))
+                .containsExactlyInAnyOrder("ja", "jav", "java", "javascript", "jazz");
+        assertThat(names(autocomplete.complete("javascripts", 10))).isEmpty();
+    }
+
+    @Test
+    void prefixesAtArrayBoundaries() {
+        load("ab", "abc", "zz", "zzz");
+
+        assertThat(names(autocomplete.complete("a", 10))).containsExactlyInAnyOrder("ab", "abc");
+        assertThat(names(autocomplete.complete("zz", 10))).containsExactlyInAnyOrder("zz", "zzz");
+        assertThat(names(autocomplete.complete("0", 10))).isEmpty();
+        assertThat(names(autocomplete.complete("я", 10))).isEmpty();
+    }
+
+    @Test
+    void ordersByWeightThenName() {
+        usage.put("java", 5);
+        usage.put("javafx", 1);
+        usage.put("javascript", 9);
+        usage.put("javadoc", 1);
+        load("java", "javadoc", "javafx", "javascript", "javalin");
+
+        assertThat(names(autocomplete.complete("java", 10)))
+                .containsExactly("javascript", "java", "javadoc", "javafx", "javalin");
+        assertThat(names(autocomplete.complete("java", 2)))
+                .containsExactly("javascript", "java");
+    }
+
+    @Test
+    void findsLegacyMixedCaseTags() {
+        usage.put("Java", 3);
+        load("Java", "SQL", "python");
+
+        assertThat(names(autocomplete.complete("jav", 10))).containsExactly("Java");
+        assertThat(names(autocomplete.complete("sq", 10))).containsExactly("SQL");
+    }
+
+    @Test
+    void addedTagBecomesSearchable() {
+        load("java", "Kotlin");
+
+        autocomplete.addAfterCommit(new Tag(100L, "kotlinx", "kotlinx"));
+        autocomplete.addAfterCommit(new Tag(101L, "kotlin", "kotlin"));
+        autocomplete.addAfterCommit(new Tag(100L, "kotlinx", "kotlinx"));
+
+        assertThat(names(autocomplete.complete("kot", 10)))
+                .containsExactlyInAnyOrder("Kotlin", "kotlin", "kotlinx");
+    }
+
+    private void load(String... names) {
+        long id = 1;
+        List<Tag> tags = new ArrayList<>();
+        for (String name : names) {
+            tags.add(new Tag(id++, name, name));
+        }
+        when(tagRepository.findAll()).thenReturn(tags);
+        autocomplete.rebuild();
+    }
+
+    private static List<String> names(List<Tag> tags) {
+        return tags.stream().map(Tag::getName).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,217 @@
+package com.postread.services;
+
+import com.postread.data.Article;
+import com.postread.data.ReactionType;
+import com.postread.dto.ArticleFeedPage;
+import com.postread.dto.ArticleSimpleDTO;
+import com.postread.repositories.ArticleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TrendingServiceTest {
+
+    private static final double HALF_LIFE_HOURS = 24;
+    private static final Duration HALF_LIFE = Duration.ofHours(24);
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+    private JdbcTemplate jdbcTemplate;
+    private ArticleRepository articleRepository;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        articleRepository = mock(ArticleRepository.class);
+        when(articleRepository.findPublishedOriginalsByIds(any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(TrendingServiceTest::article).collect(Collectors.toList());
+        });
+    }
+
+    @Test
+    void scoreHalvesEveryHalfLife() {
+        TrendingService service = service(100, 100);
+        service.recordViews(1L, 80);
+
+        assertThat(service.currentScore(1L)).isCloseTo(80.0, within(1e-9));
+        clock.advance(HALF_LIFE);
+        assertThat(service.currentScore(1L)).isCloseTo(40.0, within(1e-9));
+        clock.advance(HALF_LIFE.multipliedBy(2));
+        assertThat(service.currentScore(1L)).isCloseTo(10.0, within(1e-9));
+    }
+
+    @Test
+    void newerEventsOutrankOlderOnesWithLargerWeight() {
+        TrendingService service = service(100, 100);
+        service.recordViews(1L, 10);
+        clock.advance(HALF_LIFE);
+        service.recordViews(2L, 6);
+
+        // 10 просмотров сутки назад весят 5 - меньше, чем 6 свежих
+        assertThat(feedIds(service)).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void rebaseKeepsScoresOrderAndCursor() {
+        TrendingService service = service(100, 100);
+        // Почти до порога переноса опорной точки (λ·Δt = 50)
+        Duration beforeRebase = Duration.ofMillis((long) (49.9 / lambda()));
+        clock.advance(beforeRebase);
+        for (long id = 1; id <= 5; id++) {
+            service.recordViews(id, id * 10);
+        }
+        ArticleFeedPage first = feedPage(service, null, 2);
+        assertThat(ids(first)).containsExactly(5L, 4L);
+
+        clock.advance(Duration.ofMillis((long) (0.2 / lambda())));
+        service.checkpoint();
+
+        double decay = Math.exp(-lambda() * (long) (0.2 / lambda()));
+        assertThat(service.currentScore(5L)).isCloseTo(50 * decay, within(1e-6));
+        assertThat(service.currentScore(1L)).isCloseTo(10 * decay, within(1e-6));
+
+        // Курсор, выданный до переноса, продолжает ленту с той же позиции
+        ArticleFeedPage second = feedPage(service, first.getNextCursor(), 2);
+        assertThat(ids(second)).containsExactly(3L, 2L);
+
+        // Новые события после переноса складываются в той же шкале
+        service.recordViews(1L, 100);
+        assertThat(feedIds(service)).startsWith(1L, 5L);
+    }
+
+    @Test
+    void trimEvictsLowestScores() {
+        TrendingService service = service(3, 100);
+        service.recordViews(1L, 1);
+        service.recordViews(2L, 50);
+        service.recordViews(3L, 30);
+        service.recordViews(4L, 40);
+        service.recordViews(5L, 2);
+
+        assertThat(service.currentScore(1L)).isZero();
+        assertThat(service.currentScore(5L)).isZero();
+        assertThat(feedIds(service)).containsExactly(2L, 4L, 3L);
+    }
+
+    @Test
+    void cursorContinuesAfterRankingShifts() {
+        TrendingService service = service(100, 100);
+        for (long id = 1; id <= 4; id++) {
+            service.recordViews(id, id * 10);
+        }
+        ArticleFeedPage first = feedPage(service, null, 2);
+        assertThat(ids(first)).containsExactly(4L, 3L);
+
+        // Статья с первой страницы уходит вниз - на второй она не повторяется
+        service.recordViews(2L, 100);
+        ArticleFeedPage second = feedPage(service, first.getNextCursor(), 2);
+        assertThat(ids(second)).containsExactly(1L);
+        assertThat(second.isHasMore()).isFalse();
+    }
+
+    @Test
+    void repeatedBookmarkAndReactionScoreOnce() {
+        when(jdbcTemplate.update(anyString(), eq(7L), eq(1L), any())).thenReturn(1, 0, 0);
+        TrendingService service = service(100, 100);
+
+        service.recordBookmarkAfterCommit(7L, 1L);
+        service.recordBookmarkAfterCommit(7L, 1L);
+        service.recordReactionAfterCommit(7L, 1L, ReactionType.LIKE);
+
+        assertThat(service.currentScore(1L)).isCloseTo(5.0, within(1e-9));
+    }
+
+    @Test
+    void topKLimitsFeed() {
+        TrendingService service = service(100, 3);
+        for (long id = 1; id <= 5; id++) {
+            service.recordViews(id, id);
+        }
+        ArticleFeedPage first = feedPage(service, null, 2);
+        ArticleFeedPage second = feedPage(service, first.getNextCursor(), 2);
+
+        assertThat(ids(first)).containsExactly(5L, 4L);
+        assertThat(ids(second)).containsExactly(3L);
+        assertThat(second.isHasMore()).isFalse();
+    }
+
+    private TrendingService service(int maxTracked, int topK) {
+        return new TrendingService(jdbcTemplate, articleRepository, new SimpleMeterRegistry(),
+                HALF_LIFE_HOURS, maxTracked, topK, 30, clock);
+    }
+
+    private double lambda() {
+        return Math.log(2) / HALF_LIFE.toMillis();
+    }
+
+    private List<Long> feedIds(TrendingService service) {
+        return ids(feedPage(service, null, TrendingService.MAX_PAGE_SIZE));
+    }
+
+    private ArticleFeedPage feedPage(TrendingService service, String cursor, int size) {
+        service.loadMissingCards();
+        return service.getTrendingFeed(cursor, size);
+    }
+
+    private static List<Long> ids(ArticleFeedPage page) {
+        List<Long> ids = new ArrayList<>();
+        for (ArticleSimpleDTO card : page.getArticles()) {
+            ids.add(card.getId());
+        }
+        return ids;
+    }
+
+    private static Article article(Long id) {
+        Article article = new Article();
+        article.setId(id);
+        article.setTitle("Статья " + id);
+        article.setPublished(true);
+        return article;
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
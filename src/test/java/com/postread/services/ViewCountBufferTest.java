@@ -0,0 +1,83 @@
+package com.postread.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ViewCountBufferTest {
+
+    @Test
+    void flushDoesNotLoseViewsIncrementedConcurrently() throws Exception {
+        AtomicLong flushed = new AtomicLong();
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            List<Object[]> batch = invocation.getArgument(1);
+            batch.forEach(row -> flushed.addAndGet((Long) row[0]));
+            return new int[batch.size()];
+        });
+        ViewCountBuffer buffer = new ViewCountBuffer(jdbcTemplate, mock(ArticleCache.class),
+                mock(TrendingService.class), new SimpleMeterRegistry());
+
+        int writers = 4;
+        int viewsPerWriter = 200_000;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        for (int w = 0; w < writers; w++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < viewsPerWriter; i++) {
+                    // Несколько статей, часть из которых подолгу простаивает - их счетчики освобождаются
+                    buffer.increment((long) (i % 3 == 0 ? 1 : (i % 1000 == 0 ? 2 : 3)));
+                }
+                return null;
+            });
+        }
+
+        Thread flusher = new Thread(() -> {
+            while (writing.get()) {
+                buffer.flush();
+            }
+        });
+        flusher.start();
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+        writing.set(false);
+        flusher.join();
+
+        // Финальный сброс забирает остаток
+        buffer.flush();
+
+        assertThat(flushed.get()).isEqualTo((long) writers * viewsPerWriter);
+        assertThat(buffer.getPendingTotal()).isZero();
+    }
+
+    @Test
+    void failedFlushKeepsViewsForNextAttempt() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenThrow(new RuntimeException("db down"));
+        ViewCountBuffer buffer = new ViewCountBuffer(jdbcTemplate, mock(ArticleCache.class),
+                mock(TrendingService.class), new SimpleMeterRegistry());
+
+        buffer.increment(7L);
+        buffer.increment(7L);
+        buffer.flush();
+
+        assertThat(buffer.getPending(7L)).isEqualTo(2);
+    }
+}